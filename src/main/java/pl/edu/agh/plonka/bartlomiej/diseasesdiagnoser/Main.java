@@ -9,6 +9,7 @@ import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.service.MachineLearning;
 import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.service.PatientsService;
 import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.view.ViewManager;
 
+import javax.management.JMException;
 import java.io.File;
 import java.io.IOException;
 
@@ -34,10 +35,25 @@ public class Main extends Application {
         LOG.info("Starting application");
         viewManager = new ViewManager(primaryStage);
         initOntology();
+        registerStatistics();
         viewManager.initRootLayout(patientsService, machineLearning, BASE_URL);
         viewManager.showPatientOverview(patientsService);
     }
 
+    @Override
+    public void stop() {
+        LOG.info("Stopping application");
+        machineLearning.close();
+    }
+
+    private void registerStatistics() {
+        try {
+            machineLearning.registerMBean();
+        } catch (JMException e) {
+            LOG.warn("Failed to register learning statistics MBean.", e);
+        }
+    }
+
     private void initOntology() throws OWLOntologyCreationException {
         LOG.info("Ontology initialization.");
         File ontologyFile = getDefaultOntologyFile();
@@ -6,9 +6,8 @@ import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 import javafx.beans.value.ObservableValue;
 import javafx.collections.FXCollections;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -18,16 +17,14 @@ import static pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.utils.binding.Obser
 
 public class Entity {
 
-    private final Logger LOG = LoggerFactory.getLogger(getClass());
-
     private final StringProperty id = new SimpleStringProperty();
     private final StringProperty label = new SimpleStringProperty();
     private final StringProperty comment = new SimpleStringProperty();
     private final SetProperty<Entity> classes = new SimpleSetProperty<>(
             FXCollections.observableSet(new HashSet<>()));
 
-    private Map<String, String> languageLabelMap = new HashMap<>();
-    private Map<String, String> languageCommentMap = new HashMap<>();
+    private Map<String, String> languageLabelMap;
+    private Map<String, String> languageCommentMap;
 
     public Entity() {
     }
@@ -50,6 +47,8 @@ public class Entity {
 
     public void setLabel(String label) {
         this.label.set(label);
+        if (languageLabelMap == null)
+            languageLabelMap = new HashMap<>();
         this.languageLabelMap.put(getLanguage().getCode(), label);
     }
 
@@ -63,6 +62,8 @@ public class Entity {
 
     public void setComment(String comment) {
         this.comment.set(comment);
+        if (languageCommentMap == null)
+            languageCommentMap = new HashMap<>();
         this.languageCommentMap.put(getLanguage().getCode(), comment);
     }
 
@@ -116,28 +117,34 @@ public class Entity {
         }
     }
 
+    /**
+     * @return labels by language code; the map is allocated with the first label, so an
+     * entity without labels, like most patients, returns an empty map
+     */
     public Map<String, String> getLanguageLabelMap() {
-        return languageLabelMap;
+        return languageLabelMap != null ? languageLabelMap : Collections.emptyMap();
     }
 
     public void setLanguageLabelMap(Map<String, String> languageLabelMap) {
-        this.languageLabelMap = languageLabelMap;
+        this.languageLabelMap = languageLabelMap != null && !languageLabelMap.isEmpty() ? languageLabelMap : null;
     }
 
     public Map<String, String> getLanguageCommentMap() {
-        return languageCommentMap;
+        return languageCommentMap != null ? languageCommentMap : Collections.emptyMap();
     }
 
     public void setLanguageCommentMap(Map<String, String> languageCommentMap) {
-        this.languageCommentMap = languageCommentMap;
+        this.languageCommentMap = languageCommentMap != null && !languageCommentMap.isEmpty() ? languageCommentMap : null;
     }
 
     public void setLanguage() {
-        if (languageLabelMap.containsKey(getLanguage().getCode()))
-            this.label.setValue(languageLabelMap.get(getLanguage().getCode()));
+        Map<String, String> labels = getLanguageLabelMap();
+        Map<String, String> comments = getLanguageCommentMap();
+        if (labels.containsKey(getLanguage().getCode()))
+            this.label.setValue(labels.get(getLanguage().getCode()));
         else
             this.label.setValue(id.getValue());
-        if (languageCommentMap.containsKey(getLanguage().getCode()))
-            this.comment.setValue(languageCommentMap.get(getLanguage().getCode()));
+        if (comments.containsKey(getLanguage().getCode()))
+            this.comment.setValue(comments.get(getLanguage().getCode()));
     }
 }
@@ -6,20 +6,17 @@ import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import java.util.Collection;
 
 /**
- * Model class for a Patient.
+ * Model class for a Patient. Learning and native inference work on
+ * {@link PatientRecord} snapshots of patients.
  *
  * @author Bartłomiej Płonka
  */
 public class Patient extends Entity implements Comparable<Patient> {
 
-    private final Logger LOG = LoggerFactory.getLogger(getClass());
-
     private final StringProperty firstName = new SimpleStringProperty();
     private final StringProperty lastName = new SimpleStringProperty();
     private final IntegerProperty age = new SimpleIntegerProperty(-1);
@@ -43,6 +40,7 @@ public class Patient extends Entity implements Comparable<Patient> {
 
 
     private float evaluation;
+    private boolean loaded = true;
 
     public Patient() {
         super();
@@ -67,6 +65,18 @@ public class Patient extends Entity implements Comparable<Patient> {
         this.lastName.set(lastName);
     }
 
+    /**
+     * @return false if only the identifier and the name of the patient are loaded from the
+     * ontology
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public void setLoaded(boolean loaded) {
+        this.loaded = loaded;
+    }
+
     public float getEvaluation() {
         return evaluation;
     }
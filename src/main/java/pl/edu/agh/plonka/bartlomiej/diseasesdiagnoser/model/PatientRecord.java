@@ -0,0 +1,160 @@
+package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Immutable snapshot of a {@link Patient} used by the learning and inference layers.
+ * Linear attributes are kept as primitives and entities as sorted arrays of interned
+ * identifiers, so matching a record does not go through JavaFX properties.
+ * <p>
+ * Records are built from the patients when learning or native inference starts and are
+ * dropped afterwards. {@link Patient} is still the model which is stored and loaded, so
+ * records add to the memory of a knowledge base while they are in use.
+ */
+public final class PatientRecord {
+
+    private static final String[] NO_IDS = new String[0];
+
+    private final String id;
+    private final String firstName;
+    private final String lastName;
+    private final int age;
+    private final int height;
+    private final int weight;
+    private final String[] symptoms;
+    private final String[] negativeTests;
+    private final String[] previousDiseases;
+    private final String[] diseases;
+    private final String[] tests;
+    private final String[] treatments;
+    private final String[] causes;
+
+    private PatientRecord(Patient patient) {
+        this.id = patient.getID();
+        this.firstName = patient.getFirstName();
+        this.lastName = patient.getLastName();
+        this.age = patient.getAge();
+        this.height = patient.getHeight();
+        this.weight = patient.getWeight();
+        this.symptoms = toIDs(patient.getSymptoms());
+        this.negativeTests = toIDs(patient.getNegativeTests());
+        this.previousDiseases = toIDs(patient.getPreviousDiseases());
+        this.diseases = toIDs(patient.getDiseases());
+        this.tests = toIDs(patient.getTests());
+        this.treatments = toIDs(patient.getTreatments());
+        this.causes = toIDs(patient.getCauses());
+    }
+
+    public static PatientRecord of(Patient patient) {
+        return new PatientRecord(patient);
+    }
+
+    public static List<PatientRecord> of(Collection<? extends Patient> patients) {
+        List<PatientRecord> records = new ArrayList<>(patients.size());
+        for (Patient patient : patients)
+            records.add(new PatientRecord(patient));
+        return records;
+    }
+
+    /**
+     * @return true if the sorted array of identifiers contains the identifier
+     */
+    public static boolean contains(String[] ids, String id) {
+        return id != null && Arrays.binarySearch(ids, id) >= 0;
+    }
+
+    public String getID() {
+        return id;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public int getAge() {
+        return age;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    /**
+     * @return sorted identifiers of symptoms; must not be modified
+     */
+    public String[] getSymptoms() {
+        return symptoms;
+    }
+
+    /**
+     * @return sorted identifiers of negative tests; must not be modified
+     */
+    public String[] getNegativeTests() {
+        return negativeTests;
+    }
+
+    /**
+     * @return sorted identifiers of previous diseases; must not be modified
+     */
+    public String[] getPreviousDiseases() {
+        return previousDiseases;
+    }
+
+    /**
+     * @return sorted identifiers of diseases; must not be modified
+     */
+    public String[] getDiseases() {
+        return diseases;
+    }
+
+    /**
+     * @return sorted identifiers of tests; must not be modified
+     */
+    public String[] getTests() {
+        return tests;
+    }
+
+    /**
+     * @return sorted identifiers of treatments; must not be modified
+     */
+    public String[] getTreatments() {
+        return treatments;
+    }
+
+    /**
+     * @return sorted identifiers of causes; must not be modified
+     */
+    public String[] getCauses() {
+        return causes;
+    }
+
+    @Override
+    public String toString() {
+        return firstName + ' ' + lastName;
+    }
+
+    private static String[] toIDs(Collection<Entity> entities) {
+        if (entities.isEmpty())
+            return NO_IDS;
+        String[] ids = entities.stream()
+                .map(Entity::getID)
+                .filter(Objects::nonNull)
+                .map(String::intern)
+                .distinct()
+                .toArray(String[]::new);
+        Arrays.sort(ids);
+        return ids;
+    }
+}
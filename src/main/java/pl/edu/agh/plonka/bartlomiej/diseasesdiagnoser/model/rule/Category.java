@@ -3,6 +3,9 @@ package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule;
 import org.springframework.util.Assert;
 import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Entity;
 import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Patient;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.PatientRecord;
+
+import static pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.utils.Constants.*;
 
 public class Category {
 
@@ -24,6 +27,27 @@ public class Category {
         this.predicate = predicate;
     }
 
+    /**
+     * @return category of patients related with the entity by the object property, or null
+     * if the property does not relate patients with categories
+     */
+    public static Category fromProperty(String property, Entity entity) {
+        if (property == null)
+            return null;
+        switch (property) {
+            case HAS_DISEASE_PROPERTY:
+                return new Category(entity, Predicate.HAS_DISEASE);
+            case SHOULD_MAKE_TEST_PROPERTY:
+                return new Category(entity, Predicate.SHOULD_MAKE_TEST);
+            case SHOULD_BE_TREATED_WITH_PROPERTY:
+                return new Category(entity, Predicate.SHOULD_BE_TREATED_WITH);
+            case CAUSE_OF_DISEASE_PROPERTY:
+                return new Category(entity, Predicate.CAUSE_OF_DISEASE);
+            default:
+                return null;
+        }
+    }
+
     public boolean assertPatientInCategory(Patient patient) {
         switch (predicate) {
             case HAS_DISEASE:
@@ -39,6 +63,25 @@ public class Category {
         }
     }
 
+    public boolean assertPatientInCategory(PatientRecord patient) {
+        switch (predicate) {
+            case HAS_DISEASE:
+                return PatientRecord.contains(patient.getDiseases(), entity.getID());
+            case CAUSE_OF_DISEASE:
+                return PatientRecord.contains(patient.getCauses(), entity.getID());
+            case SHOULD_MAKE_TEST:
+                return PatientRecord.contains(patient.getTests(), entity.getID());
+            case SHOULD_BE_TREATED_WITH:
+                return PatientRecord.contains(patient.getTreatments(), entity.getID());
+            default:
+                return false;
+        }
+    }
+
+    public boolean assertPatientInCategory(EncodedPatient patient) {
+        return assertPatientInCategory(patient.getPatient());
+    }
+
     public void setPatientCategory(Patient patient) {
         switch (predicate) {
             case HAS_DISEASE:
@@ -63,4 +106,30 @@ public class Category {
     public Predicate getPredicate() {
         return predicate;
     }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + entity.hashCode();
+        result = prime * result + ((predicate == null) ? 0 : predicate.hashCode());
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        Category other = (Category) obj;
+        return entity.equals(other.entity) && predicate == other.predicate;
+    }
+
+    @Override
+    public String toString() {
+        return predicate + "(" + entity.getID() + ")";
+    }
 }
@@ -0,0 +1,267 @@
+package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule;
+
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Entity;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.PatientRecord;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+import static pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.utils.Constants.*;
+
+/**
+ * Rule compiled to conditions evaluated directly against {@link PatientRecord}s, without
+ * the OWL reasoner. Only the vocabulary of generated rules can be compiled: a patient class
+ * atom, age, height and weight comparisons, symptoms, negative tests and previous diseases
+ * in the body and categories in the head. Like in the ontology, a linear property is
+ * present only if it is positive.
+ */
+public final class CompiledRule {
+
+    public enum EntityProperty {
+        SYMPTOMS(PatientRecord::getSymptoms),
+        NEGATIVE_TESTS(PatientRecord::getNegativeTests),
+        PREVIOUS_DISEASES(PatientRecord::getPreviousDiseases);
+
+        private final Function<PatientRecord, String[]> getter;
+
+        EntityProperty(Function<PatientRecord, String[]> getter) {
+            this.getter = getter;
+        }
+
+        /**
+         * @return sorted identifiers of the entities of the patient
+         */
+        public String[] getEntityIDs(PatientRecord patient) {
+            return getter.apply(patient);
+        }
+    }
+
+    public enum LinearProperty {
+        AGE(PatientRecord::getAge),
+        HEIGHT(PatientRecord::getHeight),
+        WEIGHT(PatientRecord::getWeight);
+
+        private final ToIntFunction<PatientRecord> getter;
+
+        LinearProperty(ToIntFunction<PatientRecord> getter) {
+            this.getter = getter;
+        }
+
+        public int getValue(PatientRecord patient) {
+            return getter.applyAsInt(patient);
+        }
+    }
+
+    private static final String PREVIOUS_OR_CURRENT_DISEASE_PROPERTY = "hadOrHasDisease";
+    private static final IntRangeSelector PRESENT_SELECTOR = IntRangeSelector.atLeastSelector(1);
+
+    private final String name;
+    private final Map<EntityProperty, Set<Entity>> entities;
+    private final Map<LinearProperty, IntRangeSelector> ranges;
+    private final Collection<Category> categories;
+
+    private CompiledRule(String name, Map<EntityProperty, Set<Entity>> entities, Map<LinearProperty, IntRangeSelector> ranges,
+                         Collection<Category> categories) {
+        this.name = name;
+        this.entities = entities;
+        this.ranges = ranges;
+        this.categories = categories;
+    }
+
+    /**
+     * @return compiled rule or null, if the rule uses atoms which cannot be evaluated
+     * without the reasoner or requires disjoint ranges of a linear property
+     */
+    public static CompiledRule compile(Rule rule) {
+        Collection<AbstractAtom> bodyAtoms = new ArrayList<>(rule.getDeclarationAtoms());
+        bodyAtoms.addAll(rule.getBodyAtoms());
+
+        Variable patientVariable = null;
+        for (AbstractAtom atom : bodyAtoms) {
+            if (atom instanceof ClassDeclarationAtom) {
+                Variable variable = getPatientVariable((ClassDeclarationAtom<?>) atom);
+                if (variable == null || (patientVariable != null && !patientVariable.equals(variable)))
+                    return null;
+                patientVariable = variable;
+            }
+        }
+        if (patientVariable == null)
+            return null;
+
+        Map<Variable, LinearProperty> linearVariables = new HashMap<>();
+        Map<Variable, IntRangeSelector> linearSelectors = new HashMap<>();
+        Map<EntityProperty, Set<Entity>> entities = new EnumMap<>(EntityProperty.class);
+        for (AbstractAtom atom : bodyAtoms) {
+            if (atom instanceof ClassDeclarationAtom)
+                continue;
+            if (!(atom instanceof TwoArgumentsAtom))
+                return null;
+            TwoArgumentsAtom<?, ?> twoArgumentsAtom = (TwoArgumentsAtom<?, ?>) atom;
+            if (SWRLB_PREFIX.equals(atom.getPrefix())) {
+                if (!(twoArgumentsAtom.getArgument1() instanceof Variable) || !(twoArgumentsAtom.getArgument2() instanceof Integer))
+                    return null;
+                IntRangeSelector selector = createSelector(atom.getPredicate(), (Integer) twoArgumentsAtom.getArgument2());
+                if (selector == null)
+                    return null;
+                Variable variable = (Variable) twoArgumentsAtom.getArgument1();
+                IntRangeSelector range = linearSelectors.get(variable);
+                if (range != null) {
+                    selector = range.intersect(selector);
+                    if (selector == null)
+                        return null;
+                }
+                linearSelectors.put(variable, selector);
+            } else if (!patientVariable.equals(twoArgumentsAtom.getArgument1())) {
+                return null;
+            } else if (twoArgumentsAtom.getArgument2() instanceof Variable) {
+                LinearProperty property = getLinearProperty(atom.getPredicate());
+                if (property == null || linearVariables.containsValue(property)
+                        || linearVariables.put((Variable) twoArgumentsAtom.getArgument2(), property) != null)
+                    return null;
+            } else if (twoArgumentsAtom.getArgument2() instanceof Entity) {
+                EntityProperty property = getEntityProperty(atom.getPredicate());
+                if (property == null)
+                    return null;
+                entities.computeIfAbsent(property, p -> new HashSet<>()).add((Entity) twoArgumentsAtom.getArgument2());
+            } else {
+                return null;
+            }
+        }
+        for (Map.Entry<Variable, IntRangeSelector> entry : linearSelectors.entrySet()) {
+            if (!linearVariables.containsKey(entry.getKey()))
+                return null;
+        }
+        Map<LinearProperty, IntRangeSelector> ranges = new EnumMap<>(LinearProperty.class);
+        for (Map.Entry<Variable, LinearProperty> entry : linearVariables.entrySet()) {
+            IntRangeSelector selector = linearSelectors.get(entry.getKey());
+            IntRangeSelector range = selector == null ? PRESENT_SELECTOR : selector.intersect(PRESENT_SELECTOR);
+            if (range == null)
+                return null;
+            ranges.put(entry.getValue(), range);
+        }
+
+        Collection<Category> categories = new ArrayList<>();
+        for (AbstractAtom atom : rule.getHeadAtoms()) {
+            Category category = getCategory(atom, patientVariable);
+            if (category == null)
+                return null;
+            categories.add(category);
+        }
+
+        return new CompiledRule(rule.getName(), entities, ranges, categories);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Collection<Category> getCategories() {
+        return categories;
+    }
+
+    /**
+     * @return entities required in the property, or an empty set
+     */
+    public Set<Entity> getEntities(EntityProperty property) {
+        return entities.getOrDefault(property, Collections.emptySet());
+    }
+
+    /**
+     * @return range of values required in the property, or null if the property is not
+     * required
+     */
+    public IntRangeSelector getRange(LinearProperty property) {
+        return ranges.get(property);
+    }
+
+    /**
+     * @return number of entities and ranges required by the rule
+     */
+    public int getConditionsCount() {
+        int count = ranges.size();
+        for (Set<Entity> propertyEntities : entities.values())
+            count += propertyEntities.size();
+        return count;
+    }
+
+    public boolean matches(PatientRecord patient) {
+        for (Map.Entry<EntityProperty, Set<Entity>> entry : entities.entrySet()) {
+            String[] entityIDs = entry.getKey().getEntityIDs(patient);
+            for (Entity entity : entry.getValue()) {
+                if (!PatientRecord.contains(entityIDs, entity.getID()))
+                    return false;
+            }
+        }
+        for (Map.Entry<LinearProperty, IntRangeSelector> entry : ranges.entrySet()) {
+            if (!entry.getValue().covers(entry.getKey().getValue(patient)))
+                return false;
+        }
+        return true;
+    }
+
+    private static Variable getPatientVariable(ClassDeclarationAtom<?> atom) {
+        Entity classEntity = atom.getClassEntity();
+        if (classEntity == null || !PATIENT_CLASS.equals(classEntity.getID()) || !(atom.getArgument() instanceof Variable))
+            return null;
+        return (Variable) atom.getArgument();
+    }
+
+    private static IntRangeSelector createSelector(String predicate, int value) {
+        switch (predicate) {
+            case EQUAL_PROPERTY:
+                return IntRangeSelector.equalSelector(value);
+            case GREATER_THAN_PROPERTY:
+                return IntRangeSelector.greaterThanSelector(value);
+            case GREATER_THAN_OR_EQUAL_PROPERTY:
+                return IntRangeSelector.atLeastSelector(value);
+            case LESS_THAN_PROPERTY:
+                return IntRangeSelector.lessThanSelector(value);
+            case LESS_THAN_OR_EQUAL_PROPERTY:
+                return IntRangeSelector.atMostSelector(value);
+            default:
+                return null;
+        }
+    }
+
+    private static LinearProperty getLinearProperty(String predicate) {
+        switch (predicate) {
+            case AGE_PROPERTY:
+                return LinearProperty.AGE;
+            case HEIGHT_PROPERTY:
+                return LinearProperty.HEIGHT;
+            case WEIGHT_PROPERTY:
+                return LinearProperty.WEIGHT;
+            default:
+                return null;
+        }
+    }
+
+    private static EntityProperty getEntityProperty(String predicate) {
+        switch (predicate) {
+            case HAS_SYMPTOM_PROPERTY:
+                return EntityProperty.SYMPTOMS;
+            case NEGATIVE_TEST_PROPERTY:
+                return EntityProperty.NEGATIVE_TESTS;
+            case PREVIOUS_DISEASE_PROPERTY:
+            case PREVIOUS_OR_CURRENT_DISEASE_PROPERTY:
+                return EntityProperty.PREVIOUS_DISEASES;
+            default:
+                return null;
+        }
+    }
+
+    private static Category getCategory(AbstractAtom atom, Variable patientVariable) {
+        if (!(atom instanceof TwoArgumentsAtom) || SWRLB_PREFIX.equals(atom.getPrefix()))
+            return null;
+        TwoArgumentsAtom<?, ?> twoArgumentsAtom = (TwoArgumentsAtom<?, ?>) atom;
+        if (!patientVariable.equals(twoArgumentsAtom.getArgument1()) || !(twoArgumentsAtom.getArgument2() instanceof Entity))
+            return null;
+        return Category.fromProperty(atom.getPredicate(), (Entity) twoArgumentsAtom.getArgument2());
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledRule [name=" + name + ", categories=" + categories + "]";
+    }
+}
@@ -19,14 +19,34 @@ public class Complex implements Comparable<Complex> {
     private NominalSelector<Entity> previousDiseasesSelector;
     private NominalSelector<Entity> symptomSelector;
     private NominalSelector<Entity> negativeTestsSelector;
-    private LinearSelector<Integer> ageSelector;
-    private LinearSelector<Integer> heightSelector;
-    private LinearSelector<Integer> weightSelector;
-
-    private Float evaluation;
-
+    private IntRangeSelector ageSelector;
+    private IntRangeSelector heightSelector;
+    private IntRangeSelector weightSelector;
+
+    private float evaluation;
+    private int hash;
+
+    private EntityIndex encodedIndex;
+    private long[] previousDiseasesMask;
+    private long[] symptomMask;
+    private long[] negativeTestsMask;
+
+    private TrainingSet coverageSet;
+    private BitSet coverage;
+
+    /**
+     * Complexes are not modified once created by the learning, so the conjunction returns
+     * one of the given complexes if it is narrower than the other.
+     *
+     * @return conjunction of the complexes or null if they require disjoint ranges of age,
+     * height or weight, so that the conjunction covers no patient
+     */
     @SuppressWarnings("unchecked")
     public static Complex conjunction(Complex complex1, Complex complex2) {
+        if (complex1.contains(complex2))
+            return complex2;
+        if (complex2.contains(complex1))
+            return complex1;
         Complex resultComplex = new Complex();
         resultComplex.previousDiseasesSelector = (NominalSelector<Entity>) setSelector(
                 complex1.previousDiseasesSelector, complex2.previousDiseasesSelector);
@@ -34,13 +54,36 @@ public class Complex implements Comparable<Complex> {
                 complex2.symptomSelector);
         resultComplex.negativeTestsSelector = (NominalSelector<Entity>) setSelector(complex1.negativeTestsSelector,
                 complex2.negativeTestsSelector);
-        resultComplex.ageSelector = (LinearSelector<Integer>) setSelector(complex1.ageSelector, complex2.ageSelector);
-        resultComplex.heightSelector = (LinearSelector<Integer>) setSelector(complex1.heightSelector, complex2.heightSelector);
-        resultComplex.weightSelector = (LinearSelector<Integer>) setSelector(complex1.weightSelector, complex2.weightSelector);
+        resultComplex.ageSelector = (IntRangeSelector) setSelector(complex1.ageSelector, complex2.ageSelector);
+        resultComplex.heightSelector = (IntRangeSelector) setSelector(complex1.heightSelector, complex2.heightSelector);
+        resultComplex.weightSelector = (IntRangeSelector) setSelector(complex1.weightSelector, complex2.weightSelector);
+        if (isDisjoint(resultComplex.ageSelector, complex1.ageSelector, complex2.ageSelector)
+                || isDisjoint(resultComplex.heightSelector, complex1.heightSelector, complex2.heightSelector)
+                || isDisjoint(resultComplex.weightSelector, complex1.weightSelector, complex2.weightSelector))
+            return null;
+
+        if (complex1.encodedIndex != null && complex1.encodedIndex == complex2.encodedIndex) {
+            resultComplex.encodedIndex = complex1.encodedIndex;
+            resultComplex.previousDiseasesMask = or(complex1.previousDiseasesMask, complex2.previousDiseasesMask);
+            resultComplex.symptomMask = or(complex1.symptomMask, complex2.symptomMask);
+            resultComplex.negativeTestsMask = or(complex1.negativeTestsMask, complex2.negativeTestsMask);
+        }
+        if (complex1.coverage != null && complex2.coverage != null && complex1.coverageSet == complex2.coverageSet) {
+            BitSet coverage = (BitSet) complex1.coverage.clone();
+            coverage.and(complex2.coverage);
+            resultComplex.setCoverage(complex1.coverageSet, coverage);
+        }
 
         return resultComplex;
     }
 
+    private static long[] or(long[] mask1, long[] mask2) {
+        long[] mask = mask1.clone();
+        for (int i = 0; i < mask.length; i++)
+            mask[i] |= mask2[i];
+        return mask;
+    }
+
     @SuppressWarnings({"unchecked", "rawtypes"})
     private static Selector setSelector(Selector selector1, Selector selector2) {
         if (selector1 != null && selector2 != null)
@@ -52,11 +95,25 @@ public class Complex implements Comparable<Complex> {
         return null;
     }
 
+    /**
+     * @return true if both selectors are set, but their conjunction is not
+     */
+    private static boolean isDisjoint(IntRangeSelector conjunction, IntRangeSelector selector1, IntRangeSelector selector2) {
+        return conjunction == null && selector1 != null && selector2 != null;
+    }
+
+    /**
+     * @return conjunctions of all pairs of the complexes, except the ones which cover no patient
+     */
     public static Collection<Complex> intersection(Collection<Complex> complexes1, Collection<Complex> complexes2) {
-        List<Complex> resultComplexes = new LinkedList<>();
-        for (Complex complex1 : complexes1)
-            for (Complex complex2 : complexes2)
-                resultComplexes.add(Complex.conjunction(complex1, complex2));
+        List<Complex> resultComplexes = new ArrayList<>(complexes1.size() * complexes2.size());
+        for (Complex complex1 : complexes1) {
+            for (Complex complex2 : complexes2) {
+                Complex complex = Complex.conjunction(complex1, complex2);
+                if (complex != null)
+                    resultComplexes.add(complex);
+            }
+        }
         return resultComplexes;
     }
 
@@ -68,7 +125,7 @@ public class Complex implements Comparable<Complex> {
     }
 
     private static Collection<AbstractAtom> createLinearAtoms(Variable linearVariable, Variable patientVariable, String propertyName,
-                                                              LinearSelector<Integer> linearSelector) {
+                                                              IntRangeSelector linearSelector) {
         if (linearSelector == null)
             return Collections.emptyList();
 
@@ -79,40 +136,34 @@ public class Complex implements Comparable<Complex> {
         return atoms;
     }
 
-    private static Collection<AbstractAtom> createLinearAtoms(Variable linearVariable, LinearSelector<Integer> linearSelector) {
+    private static Collection<AbstractAtom> createLinearAtoms(Variable linearVariable, IntRangeSelector linearSelector) {
         ArrayList<AbstractAtom> atoms = new ArrayList<>();
         if (linearSelector.hasLowerBound() && linearSelector.hasUpperBound()
-                && linearSelector.lowerEndpoint().equals(linearSelector.upperEndpoint())) {
+                && linearSelector.lowerEndpoint() == linearSelector.upperEndpoint()) {
             TwoArgumentsAtom<Variable, Integer> equalAtom = new TwoArgumentsAtom<>(
                     EQUAL_PROPERTY, SWRLB_PREFIX, linearVariable, linearSelector.lowerEndpoint());
             atoms.add(equalAtom);
         } else {
             if (linearSelector.hasLowerBound()) {
-                switch (linearSelector.lowerBoundType()) {
-                    case OPEN:
-                        TwoArgumentsAtom<Variable, Integer> greaterThanAtom = new TwoArgumentsAtom<>(
-                                GREATER_THAN_PROPERTY, SWRLB_PREFIX, linearVariable, linearSelector.lowerEndpoint());
-                        atoms.add(greaterThanAtom);
-                        break;
-                    case CLOSED:
-                        TwoArgumentsAtom<Variable, Integer> atLeastAtom = new TwoArgumentsAtom<>(
-                                GREATER_THAN_OR_EQUAL_PROPERTY, SWRLB_PREFIX, linearVariable, linearSelector.lowerEndpoint());
-                        atoms.add(atLeastAtom);
-                        break;
+                if (linearSelector.isLowerBoundOpen()) {
+                    TwoArgumentsAtom<Variable, Integer> greaterThanAtom = new TwoArgumentsAtom<>(
+                            GREATER_THAN_PROPERTY, SWRLB_PREFIX, linearVariable, linearSelector.lowerEndpoint());
+                    atoms.add(greaterThanAtom);
+                } else {
+                    TwoArgumentsAtom<Variable, Integer> atLeastAtom = new TwoArgumentsAtom<>(
+                            GREATER_THAN_OR_EQUAL_PROPERTY, SWRLB_PREFIX, linearVariable, linearSelector.lowerEndpoint());
+                    atoms.add(atLeastAtom);
                 }
             }
             if (linearSelector.hasUpperBound()) {
-                switch (linearSelector.upperBoundType()) {
-                    case OPEN:
-                        TwoArgumentsAtom<Variable, Integer> lessThanAtom = new TwoArgumentsAtom<>(
-                                LESS_THAN_PROPERTY, SWRLB_PREFIX, linearVariable, linearSelector.upperEndpoint());
-                        atoms.add(lessThanAtom);
-                        break;
-                    case CLOSED:
-                        TwoArgumentsAtom<Variable, Integer> atMostAtom = new TwoArgumentsAtom<>(
-                                LESS_THAN_OR_EQUAL_PROPERTY, SWRLB_PREFIX, linearVariable, linearSelector.upperEndpoint());
-                        atoms.add(atMostAtom);
-                        break;
+                if (linearSelector.isUpperBoundOpen()) {
+                    TwoArgumentsAtom<Variable, Integer> lessThanAtom = new TwoArgumentsAtom<>(
+                            LESS_THAN_PROPERTY, SWRLB_PREFIX, linearVariable, linearSelector.upperEndpoint());
+                    atoms.add(lessThanAtom);
+                } else {
+                    TwoArgumentsAtom<Variable, Integer> atMostAtom = new TwoArgumentsAtom<>(
+                            LESS_THAN_OR_EQUAL_PROPERTY, SWRLB_PREFIX, linearVariable, linearSelector.upperEndpoint());
+                    atoms.add(atMostAtom);
                 }
             }
         }
@@ -125,6 +176,9 @@ public class Complex implements Comparable<Complex> {
 
     public void setPreviousDiseasesSelector(NominalSelector<Entity> previousDiseasesSelector) {
         this.previousDiseasesSelector = previousDiseasesSelector;
+        this.encodedIndex = null;
+        this.coverageSet = null;
+        this.hash = 0;
     }
 
     public NominalSelector<Entity> getSymptomSelector() {
@@ -133,14 +187,19 @@ public class Complex implements Comparable<Complex> {
 
     public void setSymptomSelector(NominalSelector<Entity> symptomSelector) {
         this.symptomSelector = symptomSelector;
+        this.encodedIndex = null;
+        this.coverageSet = null;
+        this.hash = 0;
     }
 
-    public LinearSelector<Integer> getAgeSelector() {
+    public IntRangeSelector getAgeSelector() {
         return ageSelector;
     }
 
-    public void setAgeSelector(LinearSelector<Integer> ageSelector) {
+    public void setAgeSelector(IntRangeSelector ageSelector) {
         this.ageSelector = ageSelector;
+        this.coverageSet = null;
+        this.hash = 0;
     }
 
     public NominalSelector<Entity> getNegativeTestsSelector() {
@@ -149,39 +208,82 @@ public class Complex implements Comparable<Complex> {
 
     public void setNegativeTestsSelector(NominalSelector<Entity> negativeTestsSelector) {
         this.negativeTestsSelector = negativeTestsSelector;
+        this.encodedIndex = null;
+        this.coverageSet = null;
+        this.hash = 0;
     }
 
-    public LinearSelector<Integer> getHeightSelector() {
+    public IntRangeSelector getHeightSelector() {
         return heightSelector;
     }
 
-    public void setHeightSelector(LinearSelector<Integer> heightSelector) {
+    public void setHeightSelector(IntRangeSelector heightSelector) {
         this.heightSelector = heightSelector;
+        this.coverageSet = null;
+        this.hash = 0;
     }
 
-    public LinearSelector<Integer> getWeightSelector() {
+    public IntRangeSelector getWeightSelector() {
         return weightSelector;
     }
 
-    public void setWeightSelector(LinearSelector<Integer> weightSelector) {
+    public void setWeightSelector(IntRangeSelector weightSelector) {
         this.weightSelector = weightSelector;
+        this.coverageSet = null;
+        this.hash = 0;
     }
 
-    public Float getEvaluation() {
+    public float getEvaluation() {
         return evaluation;
     }
 
-    public void setEvaluation(Float evaluation) {
+    public void setEvaluation(float evaluation) {
         this.evaluation = evaluation;
     }
 
+    /**
+     * @return number of conditions in the rule body generated from the complex
+     */
+    public int getSelectorsCount() {
+        int count = 0;
+        count += symptomSelector != null ? symptomSelector.size() : 0;
+        count += negativeTestsSelector != null ? negativeTestsSelector.size() : 0;
+        count += previousDiseasesSelector != null ? previousDiseasesSelector.size() : 0;
+        count += ageSelector != null ? 1 : 0;
+        count += heightSelector != null ? 1 : 0;
+        count += weightSelector != null ? 1 : 0;
+        return count;
+    }
+
+    BitSet getCoverage(TrainingSet trainingSet) {
+        return coverageSet == trainingSet ? coverage : null;
+    }
+
+    void setCoverage(TrainingSet trainingSet, BitSet coverage) {
+        this.coverageSet = trainingSet;
+        this.coverage = coverage;
+    }
+
+    /**
+     * @return true if the complex is at least as general as the given one, that is it
+     * covers every patient covered by the given complex
+     */
     public boolean contains(Complex complex) {
-        if (!contains(symptomSelector, complex.symptomSelector))
-            return false;
-        if (!contains(negativeTestsSelector, complex.negativeTestsSelector))
-            return false;
-        if (!contains(previousDiseasesSelector, complex.previousDiseasesSelector))
-            return false;
+        if (encodedIndex != null && encodedIndex == complex.encodedIndex) {
+            if (!EntityIndex.covers(symptomMask, complex.symptomMask))
+                return false;
+            if (!EntityIndex.covers(negativeTestsMask, complex.negativeTestsMask))
+                return false;
+            if (!EntityIndex.covers(previousDiseasesMask, complex.previousDiseasesMask))
+                return false;
+        } else {
+            if (!contains(symptomSelector, complex.symptomSelector))
+                return false;
+            if (!contains(negativeTestsSelector, complex.negativeTestsSelector))
+                return false;
+            if (!contains(previousDiseasesSelector, complex.previousDiseasesSelector))
+                return false;
+        }
         if (!contains(ageSelector, complex.ageSelector))
             return false;
         if (!contains(heightSelector, complex.heightSelector))
@@ -191,7 +293,13 @@ public class Complex implements Comparable<Complex> {
         return true;
     }
 
-    private boolean contains(Selector selector1, Selector selector2) {
+    private boolean contains(NominalSelector<Entity> selector1, NominalSelector<Entity> selector2) {
+        if (selector1 == null || selector1.isEmpty())
+            return true;
+        return selector2 != null && selector2.containsAll(selector1);
+    }
+
+    private boolean contains(IntRangeSelector selector1, IntRangeSelector selector2) {
         if (selector1 != null) {
             return selector1.contains(selector2);
         } else {
@@ -221,6 +329,38 @@ public class Complex implements Comparable<Complex> {
         return true;
     }
 
+    public boolean isPatientCovered(EncodedPatient patient) {
+        encode(patient.getEntityIndex());
+        if (!EntityIndex.covers(symptomMask, patient.getSymptoms())) {
+            return false;
+        }
+        if (!EntityIndex.covers(negativeTestsMask, patient.getNegativeTests())) {
+            return false;
+        }
+        if (!EntityIndex.covers(previousDiseasesMask, patient.getPreviousDiseases())) {
+            return false;
+        }
+        if (ageSelector != null && !ageSelector.covers(patient.getAge())) {
+            return false;
+        }
+        if (heightSelector != null && !heightSelector.covers(patient.getHeight())) {
+            return false;
+        }
+        if (weightSelector != null && !weightSelector.covers(patient.getWeight())) {
+            return false;
+        }
+        return true;
+    }
+
+    private void encode(EntityIndex entityIndex) {
+        if (encodedIndex == entityIndex)
+            return;
+        symptomMask = entityIndex.encode(symptomSelector);
+        negativeTestsMask = entityIndex.encode(negativeTestsSelector);
+        previousDiseasesMask = entityIndex.encode(previousDiseasesSelector);
+        encodedIndex = entityIndex;
+    }
+
     private boolean covers(Selector<Entity> selector, Collection<Entity> entities) {
         return selector == null || selector.covers(entities);
     }
@@ -263,6 +403,40 @@ public class Complex implements Comparable<Complex> {
         return rule;
     }
 
+    @Override
+    public int hashCode() {
+        if (hash == 0) {
+            final int prime = 31;
+            int result = 1;
+            result = prime * result + ((previousDiseasesSelector == null) ? 0 : previousDiseasesSelector.hashCode());
+            result = prime * result + ((symptomSelector == null) ? 0 : symptomSelector.hashCode());
+            result = prime * result + ((negativeTestsSelector == null) ? 0 : negativeTestsSelector.hashCode());
+            result = prime * result + ((ageSelector == null) ? 0 : ageSelector.hashCode());
+            result = prime * result + ((heightSelector == null) ? 0 : heightSelector.hashCode());
+            result = prime * result + ((weightSelector == null) ? 0 : weightSelector.hashCode());
+            hash = result;
+        }
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        Complex other = (Complex) obj;
+        return hashCode() == other.hashCode()
+                && Objects.equals(previousDiseasesSelector, other.previousDiseasesSelector)
+                && Objects.equals(symptomSelector, other.symptomSelector)
+                && Objects.equals(negativeTestsSelector, other.negativeTestsSelector)
+                && Objects.equals(ageSelector, other.ageSelector)
+                && Objects.equals(heightSelector, other.heightSelector)
+                && Objects.equals(weightSelector, other.weightSelector);
+    }
+
     @Override
     public String toString() {
         StringBuilder str = new StringBuilder();
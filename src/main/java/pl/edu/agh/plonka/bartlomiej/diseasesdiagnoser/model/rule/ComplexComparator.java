@@ -3,7 +3,9 @@ package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Patient;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.PatientRecord;
 
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Comparator;
 
@@ -11,29 +13,46 @@ public class ComplexComparator implements Comparator<Complex> {
 
     private final static Logger LOG = LoggerFactory.getLogger(ComplexComparator.class);
 
-    private final static float w1 = 1f;
-    private final static float w2 = 1f;
+    private final static float DEFAULT_W1 = 1f;
+    private final static float DEFAULT_W2 = 1f;
+
+    private final float w1;
+    private final float w2;
 
     public static void sortStar(Star star, Category category, Collection<Patient> trainingSet) {
-        ComplexComparator comparator = new ComplexComparator(star, category, trainingSet);
+        sortStar(star, category, new TrainingSet(PatientRecord.of(trainingSet)));
+    }
+
+    public static void sortStar(Star star, Category category, TrainingSet trainingSet) {
+        sortStar(star, category, trainingSet, DEFAULT_W1, DEFAULT_W2);
+    }
+
+    /**
+     * @param w1 weight of covered patients with the category
+     * @param w2 weight of uncovered patients with a different category
+     */
+    public static void sortStar(Star star, Category category, TrainingSet trainingSet, float w1, float w2) {
+        ComplexComparator comparator = new ComplexComparator(star, category, trainingSet, w1, w2);
         star.sort(comparator.reversed());
     }
 
-    private ComplexComparator(Star star, Category category, Collection<Patient> trainingSet) {
-        star.forEach(complex -> evaluateComplex(complex, category, trainingSet));
+    private ComplexComparator(Star star, Category category, TrainingSet trainingSet, float w1, float w2) {
+        this.w1 = w1;
+        this.w2 = w2;
+        BitSet positives = trainingSet.getPositives(category);
+        star.forEach(complex -> evaluateComplex(complex, positives, trainingSet));
     }
 
-    private static void evaluateComplex(Complex complex, Category category, Collection<Patient> trainingSet) {
-        int coveredWithTheSameCategory = 0;
-        int uncoveredWithDifferentCategory = 0;
+    private void evaluateComplex(Complex complex, BitSet positives, TrainingSet trainingSet) {
+        BitSet coverage = trainingSet.getCoverage(complex);
 
-        for (Patient patient : trainingSet) {
-            if (complex.isPatientCovered(patient) && category.assertPatientInCategory(patient))
-                coveredWithTheSameCategory++;
-            else if (!complex.isPatientCovered(patient) && !category.assertPatientInCategory(patient)) {
-                uncoveredWithDifferentCategory++;
-            }
-        }
+        BitSet coveredWithTheSameCategorySet = (BitSet) coverage.clone();
+        coveredWithTheSameCategorySet.and(positives);
+        int coveredWithTheSameCategory = coveredWithTheSameCategorySet.cardinality();
+
+        BitSet coveredOrInCategorySet = (BitSet) coverage.clone();
+        coveredOrInCategorySet.or(positives);
+        int uncoveredWithDifferentCategory = trainingSet.size() - coveredOrInCategorySet.cardinality();
 
         complex.setEvaluation(w1 * coveredWithTheSameCategory + w2 * uncoveredWithDifferentCategory);
     }
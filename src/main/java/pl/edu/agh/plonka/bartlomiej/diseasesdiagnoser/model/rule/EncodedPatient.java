@@ -0,0 +1,77 @@
+package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule;
+
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.PatientRecord;
+
+/**
+ * Learning-time representation of a {@link PatientRecord}. Nominal attributes are
+ * kept as bitsets over an {@link EntityIndex} and linear attributes as primitives,
+ * so that coverage checks do not search the entity arrays of the record.
+ */
+public class EncodedPatient {
+
+    private final PatientRecord patient;
+    private final EntityIndex entityIndex;
+    private final int index;
+    private final long[] symptoms;
+    private final long[] negativeTests;
+    private final long[] previousDiseases;
+    private final int age;
+    private final int height;
+    private final int weight;
+
+    public EncodedPatient(PatientRecord patient, EntityIndex entityIndex, int index) {
+        this.patient = patient;
+        this.entityIndex = entityIndex;
+        this.index = index;
+        this.symptoms = entityIndex.encode(patient.getSymptoms());
+        this.negativeTests = entityIndex.encode(patient.getNegativeTests());
+        this.previousDiseases = entityIndex.encode(patient.getPreviousDiseases());
+        this.age = patient.getAge();
+        this.height = patient.getHeight();
+        this.weight = patient.getWeight();
+    }
+
+    public PatientRecord getPatient() {
+        return patient;
+    }
+
+    public EntityIndex getEntityIndex() {
+        return entityIndex;
+    }
+
+    /**
+     * @return position of the patient in its {@link TrainingSet}
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public long[] getSymptoms() {
+        return symptoms;
+    }
+
+    public long[] getNegativeTests() {
+        return negativeTests;
+    }
+
+    public long[] getPreviousDiseases() {
+        return previousDiseases;
+    }
+
+    public int getAge() {
+        return age;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    @Override
+    public String toString() {
+        return patient.toString();
+    }
+}
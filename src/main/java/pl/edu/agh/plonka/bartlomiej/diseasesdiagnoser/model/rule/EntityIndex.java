@@ -0,0 +1,82 @@
+package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule;
+
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Entity;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.PatientRecord;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Assigns dense integer identifiers to the entities used by a training set, so
+ * that sets of symptoms, negative tests and previous diseases can be stored as
+ * bitsets during learning. Entities are identified by their IDs.
+ * <p>
+ * The index is immutable once created. Entities which are not known to the index
+ * are mapped to a reserved identifier that is never set in any patient bitset.
+ */
+public class EntityIndex {
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final int unknownID;
+    private final int words;
+
+    public EntityIndex(Collection<PatientRecord> patients) {
+        for (PatientRecord patient : patients) {
+            register(patient.getSymptoms());
+            register(patient.getNegativeTests());
+            register(patient.getPreviousDiseases());
+        }
+        unknownID = ids.size();
+        words = (unknownID >> 6) + 1;
+    }
+
+    private void register(String[] entityIDs) {
+        for (String entityID : entityIDs)
+            ids.putIfAbsent(entityID, ids.size());
+    }
+
+    public int getID(Entity entity) {
+        return getID(entity.getID());
+    }
+
+    public int getID(String entityID) {
+        Integer id = entityID != null ? ids.get(entityID) : null;
+        return id != null ? id : unknownID;
+    }
+
+    public int size() {
+        return unknownID;
+    }
+
+    public long[] encode(Collection<Entity> entities) {
+        long[] bits = new long[words];
+        if (entities != null) {
+            for (Entity entity : entities) {
+                int id = getID(entity);
+                bits[id >> 6] |= 1L << id;
+            }
+        }
+        return bits;
+    }
+
+    public long[] encode(String[] entityIDs) {
+        long[] bits = new long[words];
+        for (String entityID : entityIDs) {
+            int id = getID(entityID);
+            bits[id >> 6] |= 1L << id;
+        }
+        return bits;
+    }
+
+    /**
+     * @return true if every bit set in the mask is also set in the bits
+     */
+    public static boolean covers(long[] mask, long[] bits) {
+        for (int i = 0; i < mask.length; i++) {
+            if ((mask[i] & bits[i]) != mask[i])
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,188 @@
+package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule;
+
+import java.util.Collection;
+
+/**
+ * Range of integer values required by a complex, used for age, height and weight.
+ * Bounds keep the form they were created with, so that rules contain the same
+ * comparison atoms, while coverage and enclosing checks use the equivalent closed
+ * bounds. Selectors are immutable and shared between complexes created by
+ * conjunctions.
+ */
+public final class IntRangeSelector implements Selector<Integer> {
+
+    private final boolean hasLowerBound;
+    private final int lowerEndpoint;
+    private final boolean lowerBoundOpen;
+    private final boolean hasUpperBound;
+    private final int upperEndpoint;
+    private final boolean upperBoundOpen;
+    private final long min;
+    private final long max;
+
+    private IntRangeSelector(boolean hasLowerBound, int lowerEndpoint, boolean lowerBoundOpen,
+                             boolean hasUpperBound, int upperEndpoint, boolean upperBoundOpen) {
+        this.hasLowerBound = hasLowerBound;
+        this.lowerEndpoint = lowerEndpoint;
+        this.lowerBoundOpen = lowerBoundOpen;
+        this.hasUpperBound = hasUpperBound;
+        this.upperEndpoint = upperEndpoint;
+        this.upperBoundOpen = upperBoundOpen;
+        this.min = !hasLowerBound ? Long.MIN_VALUE : lowerBoundOpen ? lowerEndpoint + 1L : lowerEndpoint;
+        this.max = !hasUpperBound ? Long.MAX_VALUE : upperBoundOpen ? upperEndpoint - 1L : upperEndpoint;
+    }
+
+    public static IntRangeSelector lessThanSelector(int value) {
+        return new IntRangeSelector(false, 0, false, true, value, true);
+    }
+
+    public static IntRangeSelector atMostSelector(int value) {
+        return new IntRangeSelector(false, 0, false, true, value, false);
+    }
+
+    public static IntRangeSelector greaterThanSelector(int value) {
+        return new IntRangeSelector(true, value, true, false, 0, false);
+    }
+
+    public static IntRangeSelector atLeastSelector(int value) {
+        return new IntRangeSelector(true, value, false, false, 0, false);
+    }
+
+    public static IntRangeSelector equalSelector(int value) {
+        return new IntRangeSelector(true, value, false, true, value, false);
+    }
+
+    public boolean covers(int value) {
+        return value >= min && value <= max;
+    }
+
+    public boolean encloses(IntRangeSelector selector) {
+        return min <= selector.min && selector.max <= max;
+    }
+
+    /**
+     * @return selector of values covered by both selectors or null if they do not overlap
+     */
+    public IntRangeSelector intersect(IntRangeSelector selector) {
+        if (encloses(selector))
+            return selector;
+        if (selector.encloses(this))
+            return this;
+        IntRangeSelector lower = min >= selector.min ? this : selector;
+        IntRangeSelector upper = max <= selector.max ? this : selector;
+        if (lower.min > upper.max)
+            return null;
+        return new IntRangeSelector(lower.hasLowerBound, lower.lowerEndpoint, lower.lowerBoundOpen,
+                upper.hasUpperBound, upper.upperEndpoint, upper.upperBoundOpen);
+    }
+
+    public boolean hasLowerBound() {
+        return hasLowerBound;
+    }
+
+    public boolean hasUpperBound() {
+        return hasUpperBound;
+    }
+
+    public boolean isLowerBoundOpen() {
+        return lowerBoundOpen;
+    }
+
+    public boolean isUpperBoundOpen() {
+        return upperBoundOpen;
+    }
+
+    public int lowerEndpoint() {
+        return lowerEndpoint;
+    }
+
+    public int upperEndpoint() {
+        return upperEndpoint;
+    }
+
+    /**
+     * @return smallest covered value, as closed bound
+     */
+    long min() {
+        return min;
+    }
+
+    /**
+     * @return largest covered value, as closed bound
+     */
+    long max() {
+        return max;
+    }
+
+    @Override
+    public Selector<Integer> conjunction(Selector<Integer> selector) {
+        if (!(selector instanceof IntRangeSelector))
+            return null;
+        return intersect((IntRangeSelector) selector);
+    }
+
+    @Override
+    public boolean contains(Selector<Integer> selector) {
+        if (selector == null)
+            return !hasLowerBound && !hasUpperBound;
+        if (selector instanceof IntRangeSelector)
+            return encloses((IntRangeSelector) selector);
+        return false;
+    }
+
+    @Override
+    public boolean covers(Collection<Integer> entities) {
+        for (Integer entity : entities) {
+            if (!covers(entity))
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean covers(Integer entity) {
+        return entity != null && covers(entity.intValue());
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + (hasLowerBound ? (lowerBoundOpen ? 1231 : 1237) + lowerEndpoint : 0);
+        result = prime * result + (hasUpperBound ? (upperBoundOpen ? 1231 : 1237) + upperEndpoint : 0);
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        IntRangeSelector other = (IntRangeSelector) obj;
+        if (hasLowerBound != other.hasLowerBound || hasUpperBound != other.hasUpperBound)
+            return false;
+        if (hasLowerBound && (lowerEndpoint != other.lowerEndpoint || lowerBoundOpen != other.lowerBoundOpen))
+            return false;
+        if (hasUpperBound && (upperEndpoint != other.upperEndpoint || upperBoundOpen != other.upperBoundOpen))
+            return false;
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder();
+        if (hasLowerBound)
+            str.append(lowerBoundOpen ? '(' : '[').append(lowerEndpoint);
+        else
+            str.append("(-∞");
+        str.append("..");
+        if (hasUpperBound)
+            str.append(upperEndpoint).append(upperBoundOpen ? ')' : ']');
+        else
+            str.append("+∞)");
+        return str.toString();
+    }
+}
@@ -1,32 +1,53 @@
 package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.util.CollectionUtils;
 import sun.reflect.generics.reflectiveObjects.NotImplementedException;
 
 import java.util.Collection;
 import java.util.HashSet;
 
+/**
+ * Set of entities required by a complex. Selectors are shared between complexes
+ * created by conjunctions, so a selector must not be modified once it is part of
+ * a complex.
+ */
 public class NominalSelector<T> extends HashSet<T> implements Selector<T> {
 
     private static final long serialVersionUID = 640758287916192919L;
-    private final Logger LOG = LoggerFactory.getLogger(getClass());
 
     public NominalSelector() {
         super();
     }
 
+    /**
+     * Creates a selector sized for the expected number of entities. Most selectors of
+     * partial stars hold a single entity, for which the default table would be mostly empty.
+     */
+    public NominalSelector(int expectedSize) {
+        super(capacity(expectedSize));
+    }
+
     public NominalSelector(Collection<T> collection) {
-        super(collection);
+        this(collection.size());
+        addAll(collection);
+    }
+
+    private static int capacity(int expectedSize) {
+        return (int) (expectedSize / 0.75f) + 1;
     }
 
     @Override
     public Selector conjunction(Selector selector) {
         if (!(selector instanceof NominalSelector))
             return null;
-        NominalSelector<T> resultSelector = new NominalSelector<>(this);
-        resultSelector.addAll((NominalSelector<T>) selector);
+        NominalSelector<T> nominalSelector = (NominalSelector<T>) selector;
+        if (containsAll(nominalSelector))
+            return this;
+        if (nominalSelector.containsAll(this))
+            return nominalSelector;
+        NominalSelector<T> resultSelector = new NominalSelector<>(size() + nominalSelector.size());
+        resultSelector.addAll(this);
+        resultSelector.addAll(nominalSelector);
         return resultSelector;
     }
 
@@ -0,0 +1,85 @@
+package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.utils.Constants.*;
+
+/**
+ * Distances between patients of a {@link TrainingSet}, used to select seeds. Each
+ * distance is calculated once, on first use, and shared by all categories learned
+ * from the set. Only the lower triangle of the matrix is stored, rows are allocated
+ * when first needed.
+ * <p>
+ * Nominal attributes contribute the size of the symmetric difference of the patient
+ * entities, divided by the number of such entities in the ontology. Linear attributes
+ * contribute the absolute difference divided by the range of the attribute, if both
+ * values are known.
+ */
+public class PatientDistances {
+
+    private final AtomicReferenceArray<float[]> rows;
+    private final float symptomsCount;
+    private final float testsCount;
+    private final float diseasesCount;
+
+    public PatientDistances(TrainingSet trainingSet, int symptomsCount, int testsCount, int diseasesCount) {
+        this.rows = new AtomicReferenceArray<>(trainingSet.size());
+        this.symptomsCount = symptomsCount;
+        this.testsCount = testsCount;
+        this.diseasesCount = diseasesCount;
+    }
+
+    public float distance(EncodedPatient patient1, EncodedPatient patient2) {
+        int index1 = patient1.getIndex();
+        int index2 = patient2.getIndex();
+        if (index1 == index2)
+            return 0;
+        if (index1 < index2)
+            return distance(patient2, patient1);
+        float[] row = row(index1);
+        float distance = row[index2];
+        if (Float.isNaN(distance)) {
+            distance = calculateDistance(patient1, patient2);
+            row[index2] = distance;
+        }
+        return distance;
+    }
+
+    private float[] row(int index) {
+        float[] row = rows.get(index);
+        if (row == null) {
+            row = new float[index];
+            Arrays.fill(row, Float.NaN);
+            if (!rows.compareAndSet(index, null, row))
+                row = rows.get(index);
+        }
+        return row;
+    }
+
+    private float calculateDistance(EncodedPatient patient1, EncodedPatient patient2) {
+        float distance = 0;
+        distance += nominalDistance(patient1.getSymptoms(), patient2.getSymptoms(), symptomsCount);
+        distance += nominalDistance(patient1.getNegativeTests(), patient2.getNegativeTests(), testsCount);
+        distance += nominalDistance(patient1.getPreviousDiseases(), patient2.getPreviousDiseases(), diseasesCount);
+        distance += linearDistance(patient1.getAge(), patient2.getAge(), PATIENT_MAX_AGE - PATIENT_MIN_AGE);
+        distance += linearDistance(patient1.getHeight(), patient2.getHeight(), PATIENT_MAX_HEIGHT - PATIENT_MIN_HEIGHT);
+        distance += linearDistance(patient1.getWeight(), patient2.getWeight(), PATIENT_MAX_WEIGHT - PATIENT_MIN_WEIGHT);
+        return distance;
+    }
+
+    private static float nominalDistance(long[] bits1, long[] bits2, float entitiesCount) {
+        if (entitiesCount == 0)
+            return 0;
+        int difference = 0;
+        for (int i = 0; i < bits1.length; i++)
+            difference += Long.bitCount(bits1[i] ^ bits2[i]);
+        return difference / entitiesCount;
+    }
+
+    private static float linearDistance(int value1, int value2, float range) {
+        if (value1 < 0 || value2 < 0)
+            return 0;
+        return Math.abs(value1 - value2) / range;
+    }
+}
@@ -1,16 +1,11 @@
 package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 
 public class Rule {
 
-    private final Logger LOG = LoggerFactory.getLogger(getClass());
-
     private String name;
     private Collection<AbstractAtom> declarationAtoms = new HashSet<>();
     private Collection<AbstractAtom> bodyAtoms = new HashSet<>();
@@ -0,0 +1,135 @@
+package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule;
+
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Entity;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.PatientRecord;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.CompiledRule.EntityProperty;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.CompiledRule.LinearProperty;
+
+import java.util.*;
+
+/**
+ * Discrimination network of {@link CompiledRule}s, which tests every condition shared by
+ * many rules once per patient. Each entity ID of each property has a memory of the rules
+ * requiring it and each linear property has threshold nodes, sorted by the lower bound of
+ * the required range. A patient matches a rule if the number of satisfied conditions is
+ * equal to the number of conditions of the rule.
+ */
+public class RuleNetwork {
+
+    private final List<CompiledRule> rules = new ArrayList<>();
+    private final Map<CompiledRule, Integer> slots = new IdentityHashMap<>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private final Map<EntityProperty, Map<String, BitSet>> entityMemories = new EnumMap<>(EntityProperty.class);
+    private final Map<LinearProperty, TreeMap<Long, BitSet>> thresholdNodes = new EnumMap<>(LinearProperty.class);
+    private int[] conditionsCounts = new int[16];
+
+    public RuleNetwork() {
+        for (EntityProperty property : EntityProperty.values())
+            entityMemories.put(property, new HashMap<>());
+        for (LinearProperty property : LinearProperty.values())
+            thresholdNodes.put(property, new TreeMap<>());
+    }
+
+    public void add(CompiledRule rule) {
+        if (slots.containsKey(rule))
+            return;
+        int slot = allocateSlot(rule);
+        conditionsCounts[slot] = rule.getConditionsCount();
+        for (EntityProperty property : EntityProperty.values()) {
+            Map<String, BitSet> memory = entityMemories.get(property);
+            for (Entity entity : rule.getEntities(property))
+                memory.computeIfAbsent(entity.getID(), id -> new BitSet()).set(slot);
+        }
+        for (LinearProperty property : LinearProperty.values()) {
+            IntRangeSelector range = rule.getRange(property);
+            if (range != null)
+                thresholdNodes.get(property).computeIfAbsent(range.min(), min -> new BitSet()).set(slot);
+        }
+    }
+
+    public void remove(CompiledRule rule) {
+        Integer slot = slots.remove(rule);
+        if (slot == null)
+            return;
+        for (EntityProperty property : EntityProperty.values()) {
+            Map<String, BitSet> memory = entityMemories.get(property);
+            for (Entity entity : rule.getEntities(property))
+                clear(memory, entity.getID(), slot);
+        }
+        for (LinearProperty property : LinearProperty.values()) {
+            IntRangeSelector range = rule.getRange(property);
+            if (range != null)
+                clear(thresholdNodes.get(property), range.min(), slot);
+        }
+        rules.set(slot, null);
+        freeSlots.push(slot);
+    }
+
+    public int size() {
+        return slots.size();
+    }
+
+    /**
+     * @return rules matching the patient
+     */
+    public List<CompiledRule> match(PatientRecord patient) {
+        int[] satisfiedConditions = new int[rules.size()];
+        for (EntityProperty property : EntityProperty.values()) {
+            Map<String, BitSet> memory = entityMemories.get(property);
+            if (memory.isEmpty())
+                continue;
+            for (String entityID : property.getEntityIDs(patient)) {
+                BitSet rulesSlots = memory.get(entityID);
+                if (rulesSlots != null)
+                    increment(satisfiedConditions, rulesSlots);
+            }
+        }
+        for (LinearProperty property : LinearProperty.values()) {
+            TreeMap<Long, BitSet> nodes = thresholdNodes.get(property);
+            if (nodes.isEmpty())
+                continue;
+            long value = property.getValue(patient);
+            for (BitSet rulesSlots : nodes.headMap(value, true).values()) {
+                for (int slot = rulesSlots.nextSetBit(0); slot >= 0; slot = rulesSlots.nextSetBit(slot + 1)) {
+                    if (value <= rules.get(slot).getRange(property).max())
+                        satisfiedConditions[slot]++;
+                }
+            }
+        }
+
+        List<CompiledRule> matchingRules = new ArrayList<>();
+        for (int slot = 0; slot < satisfiedConditions.length; slot++) {
+            CompiledRule rule = rules.get(slot);
+            if (rule != null && satisfiedConditions[slot] == conditionsCounts[slot])
+                matchingRules.add(rule);
+        }
+        return matchingRules;
+    }
+
+    private int allocateSlot(CompiledRule rule) {
+        int slot;
+        if (freeSlots.isEmpty()) {
+            slot = rules.size();
+            rules.add(rule);
+            if (slot == conditionsCounts.length)
+                conditionsCounts = Arrays.copyOf(conditionsCounts, slot * 2);
+        } else {
+            slot = freeSlots.pop();
+            rules.set(slot, rule);
+        }
+        slots.put(rule, slot);
+        return slot;
+    }
+
+    private static <K> void clear(Map<K, BitSet> memory, K key, int slot) {
+        BitSet rulesSlots = memory.get(key);
+        rulesSlots.clear(slot);
+        if (rulesSlots.isEmpty())
+            memory.remove(key);
+    }
+
+    private static void increment(int[] counters, BitSet slots) {
+        for (int slot = slots.nextSetBit(0); slot >= 0; slot = slots.nextSetBit(slot + 1))
+            counters[slot]++;
+    }
+}
@@ -1,16 +1,18 @@
 package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Patient;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
+/**
+ * Set of complexes in which no complex is narrower than another one. Complexes
+ * covered by a more general complex of the star are rejected on insert, and
+ * inserting a complex removes the complexes it covers.
+ */
 public class Star extends ArrayList<Complex> {
 
-    private final Logger LOG = LoggerFactory.getLogger(getClass());
-
     public Star() {
         add(new Complex());
     }
@@ -24,21 +26,52 @@ public class Star extends ArrayList<Complex> {
     }
 
     public void intersection(Collection<Complex> otherComplexes) {
-        if (isEmpty())
-            addAll(otherComplexes);
-        Collection<Complex> newComplexes = Complex.intersection(this, otherComplexes);
-        //TODO check if it's ok
+        intersection(otherComplexes, 0);
+    }
+
+    /**
+     * Replaces the star with conjunctions of its complexes and the given ones. The
+     * conjunctions are inserted one by one, so narrower complexes are never stored.
+     * Conjunctions which cover no patient are dropped.
+     *
+     * @param maxSelectorsCount conjunctions with more selectors are skipped, 0 for no limit
+     */
+    public void intersection(Collection<Complex> otherComplexes, int maxSelectorsCount) {
+        if (isEmpty()) {
+            otherComplexes.forEach(this::insert);
+            return;
+        }
+        List<Complex> complexes = new ArrayList<>(this);
         clear();
-        addAll(newComplexes);
+        for (Complex complex1 : complexes) {
+            for (Complex complex2 : otherComplexes) {
+                Complex complex = Complex.conjunction(complex1, complex2);
+                if (complex != null && (maxSelectorsCount <= 0 || complex.getSelectorsCount() <= maxSelectorsCount))
+                    insert(complex);
+            }
+        }
+    }
+
+    /**
+     * Adds the complex unless the star contains a complex which is at least as general.
+     * Complexes narrower than the inserted one are removed.
+     *
+     * @return true if the complex was added
+     */
+    public boolean insert(Complex complex) {
+        for (Complex starComplex : this) {
+            if (starComplex.contains(complex))
+                return false;
+        }
+        removeIf(complex::contains);
+        add(complex);
+        return true;
     }
 
     public void deleteNarrowComplexes() {
-        Collection<Complex> toRemove = new ArrayList<>();
-        for (Complex c1 : this)
-            for (Complex c2 : this)
-                if (c1 != c2 && c1.contains(c2))
-                    toRemove.add(c2);
-        removeAll(toRemove);
+        List<Complex> complexes = new ArrayList<>(this);
+        clear();
+        complexes.forEach(this::insert);
     }
 
     public void leaveFirstElements(int n) {
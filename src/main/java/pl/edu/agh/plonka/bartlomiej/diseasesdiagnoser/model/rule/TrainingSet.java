@@ -0,0 +1,99 @@
+package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule;
+
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.PatientRecord;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Encoded patients used by a single learning run. Every patient has a fixed
+ * position in the set, so groups of patients are represented as bitmaps: the
+ * patients covered by a {@link Complex} and the patients belonging to a
+ * {@link Category}.
+ * <p>
+ * Category bitmaps are shared between concurrently learned categories, coverage
+ * bitmaps are cached on the complexes themselves.
+ */
+public class TrainingSet {
+
+    private final EntityIndex entityIndex;
+    private final List<EncodedPatient> patients;
+    private final Map<Category, BitSet> positives = new ConcurrentHashMap<>();
+
+    public TrainingSet(Collection<PatientRecord> patients) {
+        this.entityIndex = new EntityIndex(patients);
+        this.patients = new ArrayList<>(patients.size());
+        for (PatientRecord patient : patients)
+            this.patients.add(new EncodedPatient(patient, entityIndex, this.patients.size()));
+    }
+
+    public EntityIndex getEntityIndex() {
+        return entityIndex;
+    }
+
+    public List<EncodedPatient> getPatients() {
+        return patients;
+    }
+
+    public EncodedPatient get(int index) {
+        return patients.get(index);
+    }
+
+    public int size() {
+        return patients.size();
+    }
+
+    /**
+     * @return bitmap of all patients in the set
+     */
+    public BitSet all() {
+        BitSet all = new BitSet(patients.size());
+        all.set(0, patients.size());
+        return all;
+    }
+
+    /**
+     * @return shared bitmap of patients which belong to the category; must not be modified
+     */
+    public BitSet getPositives(Category category) {
+        return positives.computeIfAbsent(category, this::calculatePositives);
+    }
+
+    /**
+     * @return bitmap of patients covered by the complex; must not be modified
+     */
+    public BitSet getCoverage(Complex complex) {
+        BitSet coverage = complex.getCoverage(this);
+        if (coverage == null) {
+            coverage = calculateCoverage(complex);
+            complex.setCoverage(this, coverage);
+        }
+        return coverage;
+    }
+
+    public boolean hasCoverage(Complex complex) {
+        return complex.getCoverage(this) != null;
+    }
+
+    private BitSet calculatePositives(Category category) {
+        BitSet bitSet = new BitSet(patients.size());
+        for (EncodedPatient patient : patients) {
+            if (category.assertPatientInCategory(patient))
+                bitSet.set(patient.getIndex());
+        }
+        return bitSet;
+    }
+
+    private BitSet calculateCoverage(Complex complex) {
+        BitSet bitSet = new BitSet(patients.size());
+        for (EncodedPatient patient : patients) {
+            if (complex.isPatientCovered(patient))
+                bitSet.set(patient.getIndex());
+        }
+        return bitSet;
+    }
+}
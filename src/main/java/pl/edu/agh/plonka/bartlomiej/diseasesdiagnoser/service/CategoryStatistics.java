@@ -0,0 +1,87 @@
+package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.service;
+
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.Category;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Work done by {@link MachineLearning} to learn rules of a single category. Updated
+ * only by the thread learning the category and published when the category is learned.
+ */
+public class CategoryStatistics {
+
+    private final Category category;
+    private int starsBuilt;
+    private int peakStarSize;
+    private long complexesEvaluated;
+    private long coverageChecks;
+    private long time;
+
+    CategoryStatistics(Category category) {
+        this.category = category;
+    }
+
+    void starBuilt() {
+        starsBuilt++;
+    }
+
+    void starSpecialized(int starSize) {
+        peakStarSize = Math.max(peakStarSize, starSize);
+    }
+
+    void complexesEvaluated(int complexes) {
+        complexesEvaluated += complexes;
+    }
+
+    void coverageChecked(int patients) {
+        coverageChecks += patients;
+    }
+
+    void finish(long time) {
+        this.time = time;
+    }
+
+    public Category getCategory() {
+        return category;
+    }
+
+    /**
+     * @return number of stars built, one for every learned rule
+     */
+    public int getStarsBuilt() {
+        return starsBuilt;
+    }
+
+    /**
+     * @return maximum number of complexes in a star before it was cut to the beam width
+     */
+    public int getPeakStarSize() {
+        return peakStarSize;
+    }
+
+    public long getComplexesEvaluated() {
+        return complexesEvaluated;
+    }
+
+    /**
+     * @return number of patients checked against complexes whose coverage was not known yet
+     */
+    public long getCoverageChecks() {
+        return coverageChecks;
+    }
+
+    public long getTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(time);
+    }
+
+    long getTime() {
+        return time;
+    }
+
+    @Override
+    public String toString() {
+        return "CategoryStatistics [category=" + category + ", time=" + getTimeMillis() + "ms, starsBuilt=" + starsBuilt
+                + ", peakStarSize=" + peakStarSize + ", complexesEvaluated=" + complexesEvaluated
+                + ", coverageChecks=" + coverageChecks + "]";
+    }
+}
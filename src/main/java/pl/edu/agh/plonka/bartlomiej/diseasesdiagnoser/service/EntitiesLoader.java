@@ -6,15 +6,27 @@ import org.semanticweb.owlapi.reasoner.OWLReasoner;
 import org.semanticweb.owlapi.search.EntitySearcher;
 import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Entity;
 
-import java.util.HashMap;
-import java.util.Map;
-
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.toMap;
+
+/**
+ * Loads classes and their instances from the ontology.
+ * <p>
+ * The reasoner is not safe to query from many threads, so only the instance sets are
+ * taken from it, one class after another. Instances of all classes are then created in
+ * parallel, as reading their types and annotations only reads the ontology. Rendered IDs
+ * are cached per IRI, since the same classes are rendered for most of the instances.
+ */
 class EntitiesLoader {
 
     private final OWLOntology ontology;
     private final OWLObjectRenderer renderer;
     private final OWLDataFactory factory;
     private final OWLReasoner reasoner;
+    private final Map<IRI, String> renderedIDs = new ConcurrentHashMap<>();
 
     EntitiesLoader(OWLOntology ontology, OWLObjectRenderer renderer, OWLDataFactory factory, OWLReasoner reasoner) {
         this.ontology = ontology;
@@ -38,16 +50,26 @@ class EntitiesLoader {
         return classes;
     }
 
-    Map<String, Entity> loadInstances(OWLClass owlClass, Map<String, Entity> classes) {
-        Map<String, Entity> instances = new HashMap<>();
-        for (OWLNamedIndividual owlInstance : reasoner.getInstances(owlClass, false).getFlattened()) {
-            loadInstance(owlInstance, instances, classes);
-        }
-        return instances;
+    /**
+     * @return instances of each of the classes, mapped by their IDs
+     */
+    Map<OWLClass, Map<String, Entity>> loadInstances(Collection<OWLClass> owlClasses, Map<String, Entity> classes) {
+        Map<OWLClass, Set<OWLNamedIndividual>> owlInstances = new LinkedHashMap<>();
+        for (OWLClass owlClass : owlClasses)
+            owlInstances.put(owlClass, reasoner.getInstances(owlClass, false).getFlattened());
+
+        return owlInstances.entrySet().parallelStream()
+                .collect(toMap(Map.Entry::getKey, entry -> createInstances(entry.getValue(), classes)));
+    }
+
+    private Map<String, Entity> createInstances(Set<OWLNamedIndividual> owlInstances, Map<String, Entity> classes) {
+        return owlInstances.parallelStream()
+                .map(owlInstance -> createInstance(owlInstance, classes))
+                .collect(toMap(Entity::getID, identity(), (instance, duplicate) -> instance, HashMap::new));
     }
 
     private Entity loadClass(OWLEntity owlClass, Map<String, Entity> classes) {
-        String classID = renderer.render(owlClass);
+        String classID = render(owlClass);
         Entity classEntity = classes.get(classID);
         if (classEntity == null) {
             classEntity = new Entity(classID);
@@ -71,30 +93,46 @@ class EntitiesLoader {
         return getProperty(owlClass, factory.getRDFSComment());
     }
 
+    /**
+     * @return values of the annotation by language, or null if the entity has none
+     */
     private Map<String, String> getProperty(OWLEntity owlClass, OWLAnnotationProperty annotationProperty) {
-        HashMap<String, String> propertyMap = new HashMap<>();
+        HashMap<String, String> propertyMap = null;
         for (OWLAnnotation annotation : EntitySearcher.getAnnotations(owlClass, ontology,
                 annotationProperty)) {
             OWLAnnotationValue val = annotation.getValue();
             if (val instanceof OWLLiteral) {
                 OWLLiteral label = (OWLLiteral) val;
+                if (propertyMap == null)
+                    propertyMap = new HashMap<>();
                 propertyMap.put(label.getLang(), label.getLiteral());
             }
         }
         return propertyMap;
     }
 
-    private Entity loadInstance(OWLNamedIndividual owlInstance, Map<String, Entity> instances, Map<String, Entity> classes) {
-        String instanceID = renderer.render(owlInstance);
-        Entity instance = new Entity(instanceID);
+    private Entity createInstance(OWLNamedIndividual owlInstance, Map<String, Entity> classes) {
+        Entity instance = new Entity(render(owlInstance));
         for (OWLClassExpression owlParentClass : EntitySearcher.getTypes(owlInstance, ontology))
-            instance.addClass(classes.get(renderer.render(owlParentClass)));
+            instance.addClass(classes.get(render(owlParentClass)));
         instance.setLanguageLabelMap(getLabel(owlInstance));
         instance.setLanguageCommentMap(getComment(owlInstance));
         instance.setLanguage();
-        instances.put(instanceID, instance);
         return instance;
     }
-}
 
+    private String render(OWLObject owlObject) {
+        if (owlObject instanceof OWLEntity)
+            return renderedIDs.computeIfAbsent(((OWLEntity) owlObject).getIRI(), iri -> renderSynchronized(owlObject));
+        return renderSynchronized(owlObject);
+    }
 
+    /**
+     * The renderer writes to a shared buffer, so only one thread may use it at a time.
+     */
+    private String renderSynchronized(OWLObject owlObject) {
+        synchronized (renderer) {
+            return renderer.render(owlObject);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.service;
+
+/**
+ * Source of the inferred properties of patients.
+ */
+public enum InferenceMode {
+    /**
+     * Properties are read from the OWL reasoner.
+     */
+    REASONER,
+    /**
+     * Rules are evaluated by the {@link RuleEvaluator}, if all of them can be compiled.
+     */
+    NATIVE,
+    /**
+     * Rules are evaluated by the {@link RuleEvaluator} and the results are compared with the
+     * reasoner, which takes precedence.
+     */
+    CROSS_CHECK
+}
@@ -0,0 +1,288 @@
+package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.service;
+
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Entity;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Patient;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.*;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.function.Consumer;
+
+import static java.util.Arrays.asList;
+
+/**
+ * Binary encoding of entities, patients and rules shared by {@link KnowledgeBaseSnapshot}
+ * and {@link KnowledgeBaseJournal}. Entities are referenced by their identifiers, which are
+ * resolved when decoding. How strings are stored is left to the subclasses.
+ */
+class KnowledgeBaseCodec {
+
+    private static final byte NULL_TAG = 0;
+    private static final byte CLASS_ATOM_TAG = 1;
+    private static final byte TWO_ARGUMENTS_ATOM_TAG = 2;
+    private static final byte VARIABLE_TAG = 3;
+    private static final byte ENTITY_TAG = 4;
+    private static final byte INTEGER_TAG = 5;
+
+    private KnowledgeBaseCodec() {
+    }
+
+    abstract static class Encoder {
+
+        protected final DataOutputStream output;
+
+        Encoder(OutputStream stream) {
+            output = new DataOutputStream(stream);
+        }
+
+        abstract void writeString(String string) throws IOException;
+
+        /**
+         * Writes the identifier and the language maps of the entity, its classes are left
+         * to the caller.
+         */
+        void writeEntity(Entity entity) throws IOException {
+            writeString(entity.getID());
+            writeLanguageMap(entity.getLanguageLabelMap());
+            writeLanguageMap(entity.getLanguageCommentMap());
+        }
+
+        /**
+         * Writes the stored properties of the patient, or only its name if it is not loaded.
+         */
+        void writePatient(Patient patient) throws IOException {
+            writeString(patient.getID());
+            writeString(patient.getFirstName());
+            writeString(patient.getLastName());
+            output.writeBoolean(patient.isLoaded());
+            if (!patient.isLoaded())
+                return;
+            output.writeInt(patient.getAge());
+            output.writeInt(patient.getHeight());
+            output.writeInt(patient.getWeight());
+            writeString(patient.getPlaceOfResidence());
+            writeIDs(patient.getSymptoms());
+            writeIDs(patient.getDiseases());
+            writeIDs(patient.getTests());
+            writeIDs(patient.getNegativeTests());
+            writeIDs(patient.getTreatments());
+            writeIDs(patient.getCauses());
+            writeIDs(patient.getPreviousDiseases());
+        }
+
+        void writeRule(Rule rule) throws IOException {
+            writeString(rule.getName());
+            writeAtoms(rule.getDeclarationAtoms());
+            writeAtoms(rule.getBodyAtoms());
+            writeAtoms(rule.getHeadAtoms());
+        }
+
+        void writeIDs(Collection<Entity> entities) throws IOException {
+            output.writeInt(entities.size());
+            for (Entity entity : entities)
+                writeString(entity != null ? entity.getID() : null);
+        }
+
+        private void writeLanguageMap(Map<String, String> languageMap) throws IOException {
+            output.writeInt(languageMap.size());
+            for (Map.Entry<String, String> entry : languageMap.entrySet()) {
+                writeString(entry.getKey());
+                writeString(entry.getValue());
+            }
+        }
+
+        private void writeAtoms(Collection<AbstractAtom> atoms) throws IOException {
+            output.writeInt(atoms.size());
+            for (AbstractAtom atom : atoms) {
+                if (atom == null) {
+                    output.writeByte(NULL_TAG);
+                } else if (atom instanceof ClassDeclarationAtom) {
+                    ClassDeclarationAtom<?> classAtom = (ClassDeclarationAtom<?>) atom;
+                    output.writeByte(CLASS_ATOM_TAG);
+                    writeString(atom.getPrefix());
+                    writeString(atom.getPredicate());
+                    writeString(classAtom.getClassEntity() != null ? classAtom.getClassEntity().getID() : null);
+                    writeArgument(classAtom.getArgument());
+                } else if (atom instanceof TwoArgumentsAtom) {
+                    TwoArgumentsAtom<?, ?> twoArgumentsAtom = (TwoArgumentsAtom<?, ?>) atom;
+                    output.writeByte(TWO_ARGUMENTS_ATOM_TAG);
+                    writeString(atom.getPrefix());
+                    writeString(atom.getPredicate());
+                    writeArgument(twoArgumentsAtom.getArgument1());
+                    writeArgument(twoArgumentsAtom.getArgument2());
+                } else {
+                    throw new IOException("Unsupported atom " + atom);
+                }
+            }
+        }
+
+        private void writeArgument(Object argument) throws IOException {
+            if (argument == null) {
+                output.writeByte(NULL_TAG);
+            } else if (argument instanceof Variable) {
+                Variable variable = (Variable) argument;
+                output.writeByte(VARIABLE_TAG);
+                writeString(variable.getName());
+                writeString(variable.getParentClass() != null ? variable.getParentClass().getID() : null);
+            } else if (argument instanceof Entity) {
+                output.writeByte(ENTITY_TAG);
+                writeString(((Entity) argument).getID());
+            } else if (argument instanceof Integer) {
+                output.writeByte(INTEGER_TAG);
+                output.writeInt((Integer) argument);
+            } else {
+                throw new IOException("Unsupported atom argument " + argument);
+            }
+        }
+    }
+
+    /**
+     * Decodes the data written by an {@link Encoder}. Identifiers are resolved in the
+     * entities returned by the subclass, identifiers of unknown entities are skipped.
+     */
+    abstract static class Decoder {
+
+        protected final ByteBuffer buffer;
+
+        Decoder(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        abstract String readString();
+
+        abstract Map<String, Entity> getClasses();
+
+        abstract Map<String, Entity> getSymptoms();
+
+        abstract Map<String, Entity> getDiseases();
+
+        abstract Map<String, Entity> getTests();
+
+        abstract Map<String, Entity> getTreatments();
+
+        abstract Map<String, Entity> getCauses();
+
+        Entity readEntity() {
+            Entity entity = new Entity(readString());
+            entity.setLanguageLabelMap(readLanguageMap());
+            entity.setLanguageCommentMap(readLanguageMap());
+            entity.setLanguage();
+            return entity;
+        }
+
+        Patient readPatient() {
+            Patient patient = new Patient(readString(), readString(), readString());
+            patient.setLoaded(buffer.get() != 0);
+            if (!patient.isLoaded())
+                return patient;
+            patient.setAge(buffer.getInt());
+            patient.setHeight(buffer.getInt());
+            patient.setWeight(buffer.getInt());
+            patient.setPlaceOfResidence(readString());
+            readIDs(getSymptoms(), patient::addSymptom);
+            readIDs(getDiseases(), patient::addDisease);
+            readIDs(getTests(), patient::addTest);
+            readIDs(getTests(), patient::addNegativeTest);
+            readIDs(getTreatments(), patient::addTreatment);
+            readIDs(getCauses(), patient::addCause);
+            readIDs(getDiseases(), patient::addPreviousOrCurrentDisease);
+            return patient;
+        }
+
+        Rule readRule() {
+            Rule rule = new Rule(readString());
+            readAtoms(rule::addDeclarationAtom);
+            readAtoms(rule::addBodyAtom);
+            readAtoms(rule::addHeadAtom);
+            return rule;
+        }
+
+        List<Entity> readIDs(Map<String, Entity> entities) {
+            List<Entity> result = new ArrayList<>();
+            readIDs(entities, result::add);
+            return result;
+        }
+
+        void readIDs(Map<String, Entity> entities, Consumer<Entity> consumer) {
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                Entity entity = getEntity(entities, readString());
+                if (entity != null)
+                    consumer.accept(entity);
+            }
+        }
+
+        /**
+         * @return the read map, or null if it is empty so that the entity keeps no map
+         */
+        private Map<String, String> readLanguageMap() {
+            int count = buffer.getInt();
+            if (count == 0)
+                return null;
+            Map<String, String> languageMap = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++)
+                languageMap.put(readString(), readString());
+            return languageMap;
+        }
+
+        @SuppressWarnings({"rawtypes", "unchecked"})
+        private void readAtoms(Consumer<AbstractAtom> consumer) {
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                byte tag = buffer.get();
+                if (tag == NULL_TAG) {
+                    consumer.accept(null);
+                } else if (tag == CLASS_ATOM_TAG) {
+                    String prefix = readString();
+                    String predicate = readString();
+                    ClassDeclarationAtom atom = new ClassDeclarationAtom(getEntity(getClasses(), readString()), prefix);
+                    atom.setPredicate(predicate);
+                    atom.setArgument(readArgument());
+                    consumer.accept(atom);
+                } else if (tag == TWO_ARGUMENTS_ATOM_TAG) {
+                    String prefix = readString();
+                    TwoArgumentsAtom atom = new TwoArgumentsAtom(readString(), prefix);
+                    atom.setArgument1(readArgument());
+                    atom.setArgument2(readArgument());
+                    consumer.accept(atom);
+                } else {
+                    throw new IndexOutOfBoundsException("Unknown atom tag " + tag);
+                }
+            }
+        }
+
+        private Object readArgument() {
+            byte tag = buffer.get();
+            switch (tag) {
+                case NULL_TAG:
+                    return null;
+                case VARIABLE_TAG:
+                    String name = readString();
+                    return new Variable(name, getEntity(getClasses(), readString()));
+                case ENTITY_TAG:
+                    return getInstance(readString());
+                case INTEGER_TAG:
+                    return buffer.getInt();
+                default:
+                    throw new IndexOutOfBoundsException("Unknown argument tag " + tag);
+            }
+        }
+
+        private Entity getInstance(String id) {
+            for (Map<String, Entity> instances : asList(getSymptoms(), getDiseases(), getTests(), getTreatments(),
+                    getCauses())) {
+                Entity instance = instances.get(id);
+                if (instance != null)
+                    return instance;
+            }
+            return null;
+        }
+
+        private static Entity getEntity(Map<String, Entity> entities, String id) {
+            return id != null ? entities.get(id) : null;
+        }
+    }
+}
@@ -0,0 +1,561 @@
+package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Entity;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Patient;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.Rule;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.utils.AtomicFiles;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+import static java.util.Arrays.asList;
+import static pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.utils.Constants.*;
+
+/**
+ * Write-ahead journal of the changes of a knowledge base made since its OWL file was saved,
+ * stored next to the file. Every change of a patient, an entity or a rule is appended as
+ * one record, so that it is durable without saving the whole ontology. The journal is
+ * replayed when the knowledge base is opened and compacted when the knowledge base is saved.
+ * <p>
+ * Records hold the whole state of the changed patient, entity or rule, so replaying a
+ * record again has no further effect. Each record is framed with its length and CRC32, a
+ * record torn by a crash ends the journal. The header holds the checksum of the OWL file
+ * the records apply to. A save appends a checkpoint with the checksum of the new file
+ * before the file is replaced, so the records made while saving are replayed on top of
+ * whichever file survives a crash.
+ */
+class KnowledgeBaseJournal {
+
+    private static final Logger LOG = LoggerFactory.getLogger(KnowledgeBaseJournal.class);
+
+    private static final String JOURNAL_EXTENSION = ".journal";
+    private static final int MAGIC = 0x44444a4c;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+    private static final int FRAME_SIZE = 8;
+
+    private static final byte PATIENT_RECORD = 1;
+    private static final byte DELETE_PATIENT_RECORD = 2;
+    private static final byte ENTITY_RECORD = 3;
+    private static final byte DELETE_ENTITY_RECORD = 4;
+    private static final byte RULE_RECORD = 5;
+    private static final byte DELETE_RULE_RECORD = 6;
+    private static final byte CHECKPOINT_RECORD = 7;
+
+    private static final List<String> CATEGORY_CLASSES = asList(SYMPTOM_CLASS, DISEASE_CLASS, TESTING_CLASS,
+            TREATMENT_CLASS, CAUSE_CLASS);
+
+    /**
+     * Changes read from the journal, in the order they were made.
+     */
+    interface Changes {
+
+        void putPatient(Patient patient);
+
+        void deletePatient(String id);
+
+        /**
+         * @param instances entities of the category of the entity or null if the category
+         *                  of the entity is not known
+         */
+        void putEntity(Entity entity, Map<String, Entity> instances);
+
+        void deleteEntity(String id);
+
+        void putRule(Rule rule);
+
+        void deleteRule(String name);
+    }
+
+    private File ontologyFile;
+    /**
+     * Channel of the journal file, opened by the first append and kept open until the file
+     * is rewritten or the journal is closed.
+     */
+    private FileChannel channel;
+    private ByteArrayOutputStream unsavedRecords;
+    private long firstSequence;
+    private long nextSequence;
+    private List<ByteBuffer> replayedRecords = Collections.emptyList();
+
+    /**
+     * Creates the journal of a knowledge base which has no file yet. Records are kept in
+     * memory until the knowledge base is saved.
+     */
+    KnowledgeBaseJournal() {
+        unsavedRecords = new ByteArrayOutputStream();
+    }
+
+    static File getJournalFile(File ontologyFile) {
+        return new File(ontologyFile.getParentFile(), ontologyFile.getName() + JOURNAL_EXTENSION);
+    }
+
+    /**
+     * Opens the journal of the OWL file. Records which do not apply to the content of the
+     * file are discarded, the others are kept for {@link #replay(OntologyWrapper, Changes)}.
+     */
+    static KnowledgeBaseJournal open(File ontologyFile) throws IOException {
+        return open(ontologyFile, KnowledgeBaseSnapshot.checksum(ontologyFile));
+    }
+
+    /**
+     * Opens the journal of the OWL file with the known CRC32 of its content.
+     */
+    static KnowledgeBaseJournal open(File ontologyFile, long checksum) throws IOException {
+        KnowledgeBaseJournal journal = new KnowledgeBaseJournal();
+        journal.load(ontologyFile, checksum);
+        return journal;
+    }
+
+    private void load(File ontologyFile, long checksum) throws IOException {
+        File journalFile = getJournalFile(ontologyFile);
+        this.ontologyFile = ontologyFile;
+        unsavedRecords = null;
+        if (!journalFile.isFile()) {
+            rewrite(checksum, 0, Collections.emptyList());
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(journalFile.toPath()));
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            LOG.warn("Journal {} is corrupted and is discarded.", journalFile);
+            rewrite(checksum, 0, Collections.emptyList());
+            return;
+        }
+        long headerChecksum = buffer.getLong();
+        long sequence = buffer.getLong();
+        List<ByteBuffer> records = readRecords(buffer);
+
+        long replayedSequence = headerChecksum == checksum ? sequence : -1;
+        boolean checkpointed = false;
+        for (ByteBuffer record : records) {
+            if (record.get(0) == CHECKPOINT_RECORD) {
+                checkpointed = true;
+                if (record.getLong(1) == checksum)
+                    replayedSequence = record.getLong(9);
+            }
+        }
+        if (replayedSequence < 0) {
+            LOG.warn("Journal {} was written for another content of the file and is discarded.", journalFile);
+            rewrite(checksum, 0, Collections.emptyList());
+            return;
+        }
+        replayedRecords = getRecords(records, sequence, replayedSequence);
+        if (buffer.hasRemaining() || checkpointed || replayedSequence != sequence) {
+            rewrite(checksum, replayedSequence, replayedRecords);
+        } else {
+            firstSequence = sequence;
+            nextSequence = sequence + replayedRecords.size();
+        }
+        LOG.info("Opened journal {} with {} changes.", journalFile, replayedRecords.size());
+    }
+
+    /**
+     * Applies the changes read when the journal was opened. Entities are resolved in the
+     * ontology, so an entity record is applied before the records which follow it are read.
+     *
+     * @return number of the replayed changes
+     */
+    int replay(OntologyWrapper ontology, Changes changes) {
+        int count = 0;
+        for (ByteBuffer record : replayedRecords) {
+            try {
+                new RecordReader(record.duplicate(), ontology).read(changes);
+                count++;
+            } catch (RuntimeException e) {
+                LOG.warn("Failed to replay a change of " + ontologyFile + ".", e);
+            }
+        }
+        replayedRecords = Collections.emptyList();
+        return count;
+    }
+
+    synchronized File getOntologyFile() {
+        return ontologyFile;
+    }
+
+    /**
+     * @return sequence number of the next change, which marks the changes included in a save
+     */
+    synchronized long getSequence() {
+        return nextSequence;
+    }
+
+    /**
+     * @return number of the changes in the journal
+     */
+    synchronized long size() {
+        return nextSequence - firstSequence;
+    }
+
+    void putPatient(Patient patient) {
+        append(PATIENT_RECORD, writer -> writer.writePatient(patient));
+    }
+
+    void deletePatient(Patient patient) {
+        append(DELETE_PATIENT_RECORD, writer -> writer.writeString(patient.getID()));
+    }
+
+    void putEntity(Entity entity) {
+        append(ENTITY_RECORD, writer -> writer.writeInstance(entity));
+    }
+
+    void deleteEntity(Entity entity) {
+        append(DELETE_ENTITY_RECORD, writer -> writer.writeString(entity.getID()));
+    }
+
+    void putRule(Rule rule) {
+        append(RULE_RECORD, writer -> writer.writeRule(rule));
+    }
+
+    void deleteRule(Rule rule) {
+        append(DELETE_RULE_RECORD, writer -> writer.writeString(rule.getName()));
+    }
+
+    /**
+     * Records that the OWL file is about to be replaced with the content of the checksum,
+     * which includes the changes before the sequence number. Nothing is recorded if the
+     * knowledge base is saved to another file.
+     */
+    synchronized void checkpoint(File ontologyFile, long sequence, long checksum) throws IOException {
+        if (unsavedRecords != null || !ontologyFile.equals(this.ontologyFile))
+            return;
+        ByteBuffer record = ByteBuffer.allocate(17);
+        record.put(CHECKPOINT_RECORD).putLong(checksum).putLong(sequence);
+        write(record.array());
+    }
+
+    /**
+     * Rewrites the journal after the knowledge base was saved to the OWL file, keeping only
+     * the changes made since the sequence number. A journal of another file is moved to
+     * the saved file, the journal of the previous file is left for its content.
+     */
+    synchronized void compact(File ontologyFile, long sequence, long checksum) throws IOException {
+        List<ByteBuffer> records = getRecords(readCurrentRecords(), firstSequence, sequence);
+        this.ontologyFile = ontologyFile;
+        unsavedRecords = null;
+        rewrite(checksum, sequence, records);
+        LOG.info("Compacted journal of {} to {} changes.", ontologyFile, records.size());
+    }
+
+    /**
+     * Releases the journal file. A later change opens it again.
+     */
+    synchronized void close() {
+        closeChannel();
+    }
+
+    /**
+     * Numbers the change only once it is written, as the records are numbered by their
+     * position in the journal.
+     */
+    private synchronized void append(byte type, RecordContent content) {
+        try {
+            RecordWriter writer = new RecordWriter(type);
+            content.write(writer);
+            write(writer.toByteArray());
+            nextSequence++;
+        } catch (IOException e) {
+            LOG.error("Failed to journal a change of " + ontologyFile + ", it is kept until the knowledge base is saved.", e);
+        }
+    }
+
+    private void write(byte[] record) throws IOException {
+        if (unsavedRecords != null) {
+            writeRecord(new DataOutputStream(unsavedRecords), ByteBuffer.wrap(record));
+            return;
+        }
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_SIZE + record.length);
+        frame.putInt(record.length).putInt((int) crc(ByteBuffer.wrap(record))).put(record);
+        frame.flip();
+        if (channel == null)
+            channel = FileChannel.open(getJournalFile(ontologyFile).toPath(),
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND, StandardOpenOption.CREATE);
+        long size = channel.size();
+        try {
+            while (frame.hasRemaining())
+                channel.write(frame);
+            channel.force(false);
+        } catch (IOException e) {
+            truncate(size);
+            throw e;
+        }
+    }
+
+    /**
+     * Removes a partly written record, so that it does not end the journal before the
+     * records appended after it. The channel is closed if that fails.
+     */
+    private void truncate(long size) {
+        try {
+            channel.truncate(size);
+        } catch (IOException e) {
+            LOG.warn("Failed to truncate journal of " + ontologyFile + ".", e);
+            closeChannel();
+        }
+    }
+
+    private void closeChannel() {
+        if (channel == null)
+            return;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOG.warn("Failed to close journal of " + ontologyFile + ".", e);
+        }
+        channel = null;
+    }
+
+    private List<ByteBuffer> readCurrentRecords() throws IOException {
+        if (unsavedRecords != null)
+            return readRecords(ByteBuffer.wrap(unsavedRecords.toByteArray()));
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(getJournalFile(ontologyFile).toPath()));
+        buffer.position(HEADER_SIZE);
+        return readRecords(buffer);
+    }
+
+    private void rewrite(long checksum, long sequence, List<ByteBuffer> records) throws IOException {
+        closeChannel();
+        AtomicFiles.write(getJournalFile(ontologyFile), stream -> {
+            DataOutputStream output = new DataOutputStream(stream);
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(checksum);
+            output.writeLong(sequence);
+            for (ByteBuffer record : records)
+                writeRecord(output, record);
+            output.flush();
+        });
+        firstSequence = sequence;
+        nextSequence = sequence + records.size();
+    }
+
+    /**
+     * @return changes numbered from the first sequence number, starting with the sequence
+     * number; checkpoints are skipped
+     */
+    private static List<ByteBuffer> getRecords(List<ByteBuffer> records, long firstSequence, long sequence) {
+        List<ByteBuffer> result = new ArrayList<>();
+        long recordSequence = firstSequence;
+        for (ByteBuffer record : records) {
+            if (record.get(0) == CHECKPOINT_RECORD)
+                continue;
+            if (recordSequence++ >= sequence)
+                result.add(record);
+        }
+        return result;
+    }
+
+    /**
+     * @return records up to the first torn or corrupted one, the position of the buffer is
+     * left after the last read record
+     */
+    private static List<ByteBuffer> readRecords(ByteBuffer buffer) {
+        List<ByteBuffer> records = new ArrayList<>();
+        while (buffer.remaining() >= FRAME_SIZE) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            int crc = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                buffer.position(start);
+                break;
+            }
+            ByteBuffer record = buffer.slice();
+            record.limit(length);
+            if ((int) crc(record) != crc) {
+                buffer.position(start);
+                break;
+            }
+            buffer.position(buffer.position() + length);
+            records.add(record);
+        }
+        return records;
+    }
+
+    private static void writeRecord(DataOutputStream output, ByteBuffer record) throws IOException {
+        ByteBuffer bytes = record.duplicate();
+        output.writeInt(bytes.remaining());
+        output.writeInt((int) crc(bytes));
+        while (bytes.hasRemaining())
+            output.write(bytes.get());
+    }
+
+    private static long crc(ByteBuffer buffer) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate());
+        return crc.getValue();
+    }
+
+    /**
+     * @return class of the category of the entity, like Symptom, found among the ancestors
+     * of its classes
+     */
+    private static String getCategoryClass(Entity entity) {
+        Deque<Entity> classes = new ArrayDeque<>(entity.getClasses());
+        Set<Entity> visited = new HashSet<>();
+        while (!classes.isEmpty()) {
+            Entity cls = classes.poll();
+            if (cls == null || !visited.add(cls))
+                continue;
+            if (CATEGORY_CLASSES.contains(cls.getID()))
+                return cls.getID();
+            classes.addAll(cls.getClasses());
+        }
+        return null;
+    }
+
+    @FunctionalInterface
+    private interface RecordContent {
+        void write(RecordWriter writer) throws IOException;
+    }
+
+    private static class RecordWriter extends KnowledgeBaseCodec.Encoder {
+
+        private final ByteArrayOutputStream bytes;
+
+        RecordWriter(byte type) throws IOException {
+            this(new ByteArrayOutputStream());
+            output.writeByte(type);
+        }
+
+        private RecordWriter(ByteArrayOutputStream bytes) {
+            super(bytes);
+            this.bytes = bytes;
+        }
+
+        byte[] toByteArray() {
+            return bytes.toByteArray();
+        }
+
+        /**
+         * @throws IllegalArgumentException if the patient is not loaded, its record would
+         *                                  replace the stored patient with an empty one
+         */
+        @Override
+        void writePatient(Patient patient) throws IOException {
+            if (!patient.isLoaded())
+                throw new IllegalArgumentException("Patient " + patient.getID() + " is not loaded.");
+            super.writePatient(patient);
+        }
+
+        /**
+         * Writes the entity with its category and classes, which are resolved on replay.
+         */
+        void writeInstance(Entity entity) throws IOException {
+            writeString(getCategoryClass(entity));
+            writeEntity(entity);
+            writeIDs(entity.getClasses());
+        }
+
+        @Override
+        void writeString(String string) throws IOException {
+            if (string == null) {
+                output.writeInt(-1);
+                return;
+            }
+            byte[] stringBytes = string.getBytes(StandardCharsets.UTF_8);
+            output.writeInt(stringBytes.length);
+            output.write(stringBytes);
+        }
+    }
+
+    private static class RecordReader extends KnowledgeBaseCodec.Decoder {
+
+        private final OntologyWrapper ontology;
+
+        RecordReader(ByteBuffer buffer, OntologyWrapper ontology) {
+            super(buffer);
+            this.ontology = ontology;
+        }
+
+        void read(Changes changes) {
+            byte type = buffer.get();
+            switch (type) {
+                case PATIENT_RECORD:
+                    changes.putPatient(readPatient());
+                    break;
+                case DELETE_PATIENT_RECORD:
+                    changes.deletePatient(readString());
+                    break;
+                case ENTITY_RECORD:
+                    Map<String, Entity> instances = getInstances(readString());
+                    Entity entity = readEntity();
+                    readIDs(getClasses(), entity::addClass);
+                    changes.putEntity(entity, instances);
+                    break;
+                case DELETE_ENTITY_RECORD:
+                    changes.deleteEntity(readString());
+                    break;
+                case RULE_RECORD:
+                    changes.putRule(readRule());
+                    break;
+                case DELETE_RULE_RECORD:
+                    changes.deleteRule(readString());
+                    break;
+                default:
+                    throw new IndexOutOfBoundsException("Unknown record type " + type);
+            }
+        }
+
+        @Override
+        String readString() {
+            int length = buffer.getInt();
+            if (length < 0)
+                return null;
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        Map<String, Entity> getClasses() {
+            return ontology.getClasses();
+        }
+
+        @Override
+        Map<String, Entity> getSymptoms() {
+            return ontology.getSymptoms();
+        }
+
+        @Override
+        Map<String, Entity> getDiseases() {
+            return ontology.getDiseases();
+        }
+
+        @Override
+        Map<String, Entity> getTests() {
+            return ontology.getTests();
+        }
+
+        @Override
+        Map<String, Entity> getTreatments() {
+            return ontology.getTreatments();
+        }
+
+        @Override
+        Map<String, Entity> getCauses() {
+            return ontology.getCauses();
+        }
+
+        private Map<String, Entity> getInstances(String categoryClass) {
+            if (SYMPTOM_CLASS.equals(categoryClass))
+                return ontology.getSymptoms();
+            else if (DISEASE_CLASS.equals(categoryClass))
+                return ontology.getDiseases();
+            else if (TESTING_CLASS.equals(categoryClass))
+                return ontology.getTests();
+            else if (TREATMENT_CLASS.equals(categoryClass))
+                return ontology.getTreatments();
+            else if (CAUSE_CLASS.equals(categoryClass))
+                return ontology.getCauses();
+            return null;
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Entity;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Patient;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.Rule;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.utils.AtomicFiles;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot of a loaded knowledge base, stored next to its OWL file. It holds the
+ * classes, the entities with their language maps, the patients and the parsed rules, so
+ * that opening an unchanged knowledge base neither extracts them from the ontology with
+ * the reasoner nor parses the rules.
+ * <p>
+ * The snapshot is used only if it is newer than the OWL file and was written for its
+ * content. The size, the modification time and the CRC32 of the file are stored; the file
+ * is hashed only if its size or modification time differ, so a change which keeps both,
+ * like an edit within the resolution of the file timestamps, is not detected. The OWL
+ * file is still parsed to create the reasoner. All strings are stored once in a table and
+ * referenced by their position.
+ */
+public class KnowledgeBaseSnapshot {
+
+    private static final Logger LOG = LoggerFactory.getLogger(KnowledgeBaseSnapshot.class);
+
+    private static final String SNAPSHOT_EXTENSION = ".snapshot";
+    private static final int MAGIC = 0x44444b42;
+    private static final int VERSION = 2;
+
+    private final Map<String, Entity> classes = new HashMap<>();
+    private final Map<String, Entity> symptoms = new HashMap<>();
+    private final Map<String, Entity> diseases = new HashMap<>();
+    private final Map<String, Entity> tests = new HashMap<>();
+    private final Map<String, Entity> treatments = new HashMap<>();
+    private final Map<String, Entity> causes = new HashMap<>();
+    private final List<Patient> patients = new ArrayList<>();
+    private final List<Rule> rules = new ArrayList<>();
+    private long checksum;
+
+    private KnowledgeBaseSnapshot() {
+    }
+
+    public static File getSnapshotFile(File ontologyFile) {
+        return new File(ontologyFile.getParentFile(), ontologyFile.getName() + SNAPSHOT_EXTENSION);
+    }
+
+    public static long checksum(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream input = new FileInputStream(file)) {
+            int read;
+            while ((read = input.read(buffer)) != -1)
+                crc.update(buffer, 0, read);
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * @return snapshot of the knowledge base or null if there is no snapshot, it is older
+     * than the OWL file, it was written for another content of the file or it is corrupted
+     */
+    public static KnowledgeBaseSnapshot read(File ontologyFile) {
+        File snapshotFile = getSnapshotFile(ontologyFile);
+        if (!snapshotFile.isFile() || snapshotFile.lastModified() < ontologyFile.lastModified())
+            return null;
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(snapshotFile.toPath()));
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+                return null;
+            long checksum = buffer.getLong();
+            long length = buffer.getLong();
+            long lastModified = buffer.getLong();
+            if ((length != ontologyFile.length() || lastModified != ontologyFile.lastModified())
+                    && checksum != checksum(ontologyFile)) {
+                LOG.debug("Snapshot {} is outdated.", snapshotFile);
+                return null;
+            }
+            KnowledgeBaseSnapshot snapshot = new Reader(buffer).read();
+            snapshot.checksum = checksum;
+            LOG.info("Loaded knowledge base snapshot {}.", snapshotFile);
+            return snapshot;
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Failed to read knowledge base snapshot " + snapshotFile + ".", e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the snapshot of the knowledge base saved in the OWL file. Patients which are
+     * not loaded are stored with their names only.
+     */
+    public static void write(File ontologyFile, OntologyWrapper ontology, Collection<Patient> patients) throws IOException {
+        encode(ontology, patients).writeTo(ontologyFile);
+    }
+
+    /**
+     * Encodes the snapshot in memory, so that it can be written by another thread while the
+     * knowledge base is changed.
+     */
+    static Writer encode(OntologyWrapper ontology, Collection<Patient> patients) throws IOException {
+        Writer writer = new Writer();
+        writer.writeEntities(ontology);
+        writer.writePatients(patients);
+        writer.writeRules(ontology.getRules());
+        return writer;
+    }
+
+    /**
+     * @return CRC32 of the OWL file the snapshot was read for
+     */
+    long getChecksum() {
+        return checksum;
+    }
+
+    Map<String, Entity> getClasses() {
+        return classes;
+    }
+
+    Map<String, Entity> getSymptoms() {
+        return symptoms;
+    }
+
+    Map<String, Entity> getDiseases() {
+        return diseases;
+    }
+
+    Map<String, Entity> getTests() {
+        return tests;
+    }
+
+    Map<String, Entity> getTreatments() {
+        return treatments;
+    }
+
+    Map<String, Entity> getCauses() {
+        return causes;
+    }
+
+    List<Patient> getPatients() {
+        return patients;
+    }
+
+    List<Rule> getRules() {
+        return rules;
+    }
+
+    static class Writer extends KnowledgeBaseCodec.Encoder {
+
+        private final Map<String, Integer> strings = new LinkedHashMap<>();
+        private final ByteArrayOutputStream body;
+
+        Writer() {
+            this(new ByteArrayOutputStream());
+        }
+
+        private Writer(ByteArrayOutputStream body) {
+            super(body);
+            this.body = body;
+        }
+
+        void writeEntities(OntologyWrapper ontology) throws IOException {
+            Collection<Entity> classes = ontology.getClasses().values();
+            output.writeInt(classes.size());
+            for (Entity cls : classes)
+                writeEntity(cls);
+            for (Entity cls : classes)
+                writeIDs(cls.getClasses());
+            writeInstances(ontology.getSymptoms());
+            writeInstances(ontology.getDiseases());
+            writeInstances(ontology.getTests());
+            writeInstances(ontology.getTreatments());
+            writeInstances(ontology.getCauses());
+        }
+
+        void writePatients(Collection<Patient> patients) throws IOException {
+            output.writeInt(patients.size());
+            for (Patient patient : patients) {
+                writePatient(patient);
+                if (!patient.isLoaded())
+                    continue;
+                writeIDs(patient.getInferredSymptoms());
+                writeIDs(patient.getInferredDiseases());
+                writeIDs(patient.getInferredTests());
+                writeIDs(patient.getInferredTreatments());
+                writeIDs(patient.getInferredCauses());
+            }
+        }
+
+        void writeRules(Collection<Rule> rules) throws IOException {
+            output.writeInt(rules.size());
+            for (Rule rule : rules)
+                writeRule(rule);
+        }
+
+        /**
+         * Writes the snapshot of the OWL file, replacing the previous snapshot atomically.
+         */
+        void writeTo(File ontologyFile) throws IOException {
+            writeTo(ontologyFile, checksum(ontologyFile));
+        }
+
+        /**
+         * Writes the snapshot of the OWL file with the known CRC32 of its content.
+         */
+        void writeTo(File ontologyFile, long checksum) throws IOException {
+            long length = ontologyFile.length();
+            long lastModified = ontologyFile.lastModified();
+            File snapshotFile = getSnapshotFile(ontologyFile);
+            AtomicFiles.write(snapshotFile, stream -> {
+                DataOutputStream file = new DataOutputStream(stream);
+                file.writeInt(MAGIC);
+                file.writeInt(VERSION);
+                file.writeLong(checksum);
+                file.writeLong(length);
+                file.writeLong(lastModified);
+                file.writeInt(strings.size());
+                for (String string : strings.keySet()) {
+                    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                    file.writeInt(bytes.length);
+                    file.write(bytes);
+                }
+                body.writeTo(file);
+                file.flush();
+            });
+            LOG.info("Written knowledge base snapshot {}.", snapshotFile);
+        }
+
+        @Override
+        void writeString(String string) throws IOException {
+            if (string == null) {
+                output.writeInt(-1);
+                return;
+            }
+            Integer index = strings.get(string);
+            if (index == null) {
+                index = strings.size();
+                strings.put(string, index);
+            }
+            output.writeInt(index);
+        }
+
+        private void writeInstances(Map<String, Entity> instances) throws IOException {
+            output.writeInt(instances.size());
+            for (Entity instance : instances.values()) {
+                writeEntity(instance);
+                writeIDs(instance.getClasses());
+            }
+        }
+    }
+
+    private static class Reader extends KnowledgeBaseCodec.Decoder {
+
+        private final KnowledgeBaseSnapshot snapshot = new KnowledgeBaseSnapshot();
+        private String[] strings;
+
+        Reader(ByteBuffer buffer) {
+            super(buffer);
+        }
+
+        KnowledgeBaseSnapshot read() {
+            readStrings();
+            readEntities();
+            readPatients();
+            readRules();
+            return snapshot;
+        }
+
+        @Override
+        String readString() {
+            int index = buffer.getInt();
+            return index >= 0 ? strings[index] : null;
+        }
+
+        @Override
+        Map<String, Entity> getClasses() {
+            return snapshot.classes;
+        }
+
+        @Override
+        Map<String, Entity> getSymptoms() {
+            return snapshot.symptoms;
+        }
+
+        @Override
+        Map<String, Entity> getDiseases() {
+            return snapshot.diseases;
+        }
+
+        @Override
+        Map<String, Entity> getTests() {
+            return snapshot.tests;
+        }
+
+        @Override
+        Map<String, Entity> getTreatments() {
+            return snapshot.treatments;
+        }
+
+        @Override
+        Map<String, Entity> getCauses() {
+            return snapshot.causes;
+        }
+
+        private void readStrings() {
+            strings = new String[buffer.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+        }
+
+        private void readEntities() {
+            List<Entity> classes = new ArrayList<>();
+            int classesCount = buffer.getInt();
+            for (int i = 0; i < classesCount; i++) {
+                Entity cls = readEntity();
+                classes.add(cls);
+                snapshot.classes.put(cls.getID(), cls);
+            }
+            for (Entity cls : classes)
+                readIDs(snapshot.classes, cls::addClass);
+            readInstances(snapshot.symptoms);
+            readInstances(snapshot.diseases);
+            readInstances(snapshot.tests);
+            readInstances(snapshot.treatments);
+            readInstances(snapshot.causes);
+        }
+
+        private void readInstances(Map<String, Entity> instances) {
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                Entity instance = readEntity();
+                readIDs(snapshot.classes, instance::addClass);
+                instances.put(instance.getID(), instance);
+            }
+        }
+
+        private void readPatients() {
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                Patient patient = readPatient();
+                if (patient.isLoaded()) {
+                    patient.setInferredSymptoms(readIDs(snapshot.symptoms));
+                    patient.setInferredDiseases(readIDs(snapshot.diseases));
+                    patient.setInferredTests(readIDs(snapshot.tests));
+                    patient.setInferredTreatments(readIDs(snapshot.treatments));
+                    patient.setInferredCauses(readIDs(snapshot.causes));
+                }
+                snapshot.patients.add(patient);
+            }
+        }
+
+        private void readRules() {
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++)
+                snapshot.rules.add(readRule());
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.service;
+
+import org.springframework.util.Assert;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parameters of {@link MachineLearning}. Defaults reproduce the original behaviour of
+ * the algorithm: beam width 5, equal evaluation weights, linear splits in the middle
+ * between the seeds and no limits on complexes, rules or learning time.
+ * <p>
+ * The configuration is read while learning runs, so it should not be modified then.
+ */
+public class LearningConfig {
+
+    private int beamWidth = 5;
+    private float coveredPositivesWeight = 1f;
+    private float uncoveredNegativesWeight = 1f;
+    private float epsilon = 0.5f;
+    private int maxSelectorsPerComplex = 0;
+    private int maxRulesPerCategory = 0;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private long timeoutMillis = 0;
+
+    public int getBeamWidth() {
+        return beamWidth;
+    }
+
+    /**
+     * @param beamWidth number of best complexes kept in the star after each specialization
+     */
+    public LearningConfig withBeamWidth(int beamWidth) {
+        Assert.isTrue(beamWidth > 0, "Beam width must be positive.");
+        this.beamWidth = beamWidth;
+        return this;
+    }
+
+    public float getCoveredPositivesWeight() {
+        return coveredPositivesWeight;
+    }
+
+    /**
+     * @param coveredPositivesWeight weight of covered patients from the learned category in the complex evaluation
+     */
+    public LearningConfig withCoveredPositivesWeight(float coveredPositivesWeight) {
+        this.coveredPositivesWeight = coveredPositivesWeight;
+        return this;
+    }
+
+    public float getUncoveredNegativesWeight() {
+        return uncoveredNegativesWeight;
+    }
+
+    /**
+     * @param uncoveredNegativesWeight weight of uncovered patients from other categories in the complex evaluation
+     */
+    public LearningConfig withUncoveredNegativesWeight(float uncoveredNegativesWeight) {
+        this.uncoveredNegativesWeight = uncoveredNegativesWeight;
+        return this;
+    }
+
+    public float getEpsilon() {
+        return epsilon;
+    }
+
+    /**
+     * @param epsilon position of a linear split between the seeds, 0 for restrictive, 1 for general
+     */
+    public LearningConfig withEpsilon(float epsilon) {
+        Assert.isTrue(epsilon >= 0 && epsilon <= 1, "Epsilon must be between 0 and 1.");
+        this.epsilon = epsilon;
+        return this;
+    }
+
+    public int getMaxSelectorsPerComplex() {
+        return maxSelectorsPerComplex;
+    }
+
+    /**
+     * @param maxSelectorsPerComplex maximum number of conditions in a rule body, 0 for no limit
+     */
+    public LearningConfig withMaxSelectorsPerComplex(int maxSelectorsPerComplex) {
+        Assert.isTrue(maxSelectorsPerComplex >= 0, "Maximum selectors per complex must not be negative.");
+        this.maxSelectorsPerComplex = maxSelectorsPerComplex;
+        return this;
+    }
+
+    public int getMaxRulesPerCategory() {
+        return maxRulesPerCategory;
+    }
+
+    /**
+     * @param maxRulesPerCategory maximum number of rules learned for a single category, 0 for no limit
+     */
+    public LearningConfig withMaxRulesPerCategory(int maxRulesPerCategory) {
+        Assert.isTrue(maxRulesPerCategory >= 0, "Maximum rules per category must not be negative.");
+        this.maxRulesPerCategory = maxRulesPerCategory;
+        return this;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @param parallelism maximum number of categories learned at the same time
+     */
+    public LearningConfig withParallelism(int parallelism) {
+        Assert.isTrue(parallelism > 0, "Parallelism must be positive.");
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * @param timeout maximum learning time, 0 for no limit
+     */
+    public LearningConfig withTimeout(long timeout, TimeUnit unit) {
+        Assert.isTrue(timeout >= 0, "Timeout must not be negative.");
+        this.timeoutMillis = unit.toMillis(timeout);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "LearningConfig [beamWidth=" + beamWidth + ", coveredPositivesWeight=" + coveredPositivesWeight
+                + ", uncoveredNegativesWeight=" + uncoveredNegativesWeight + ", epsilon=" + epsilon
+                + ", maxSelectorsPerComplex=" + maxSelectorsPerComplex + ", maxRulesPerCategory=" + maxRulesPerCategory
+                + ", parallelism=" + parallelism + ", timeoutMillis=" + timeoutMillis + "]";
+    }
+}
@@ -0,0 +1,23 @@
+package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.service;
+
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.Category;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.Rule;
+
+import java.util.Collection;
+
+/**
+ * Receives progress of {@link MachineLearning}. Methods are called from the learning
+ * worker threads, so listeners updating the view must hand the work over to the
+ * JavaFX application thread.
+ */
+public interface LearningProgressListener {
+
+    default void learningStarted(int allCategories) {
+    }
+
+    void categoryLearned(Category category, Collection<Rule> rules, CategoryStatistics statistics, int learnedCategories,
+                         int allCategories);
+
+    default void learningFinished(LearningReport report) {
+    }
+}
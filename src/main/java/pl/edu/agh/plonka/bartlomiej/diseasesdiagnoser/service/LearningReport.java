@@ -0,0 +1,81 @@
+package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.service;
+
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.Category;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timings and statistics of a single {@link MachineLearning} run.
+ */
+public class LearningReport {
+
+    private final LearningConfig config;
+    private final Map<Category, CategoryStatistics> categoryStatistics = new ConcurrentHashMap<>();
+    private final long startTime = System.nanoTime();
+    private long totalTime;
+    private int rulesCount;
+    private boolean complete;
+
+    LearningReport(LearningConfig config) {
+        this.config = config;
+    }
+
+    void categoryLearned(CategoryStatistics statistics) {
+        categoryStatistics.put(statistics.getCategory(), statistics);
+    }
+
+    void finish(int rulesCount, boolean complete) {
+        this.totalTime = System.nanoTime() - startTime;
+        this.rulesCount = rulesCount;
+        this.complete = complete;
+    }
+
+    public LearningConfig getConfig() {
+        return config;
+    }
+
+    public long getTotalTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalTime);
+    }
+
+    /**
+     * @return learning time of every learned category in milliseconds
+     */
+    public Map<Category, Long> getCategoryTimesMillis() {
+        Map<Category, Long> times = new ConcurrentHashMap<>();
+        categoryStatistics.forEach((category, statistics) -> times.put(category, statistics.getTimeMillis()));
+        return Collections.unmodifiableMap(times);
+    }
+
+    public Collection<CategoryStatistics> getCategoryStatistics() {
+        return Collections.unmodifiableCollection(new ArrayList<>(categoryStatistics.values()));
+    }
+
+    public int getLearnedCategoriesCount() {
+        return categoryStatistics.size();
+    }
+
+    public int getRulesCount() {
+        return rulesCount;
+    }
+
+    /**
+     * @return false if the learning was cancelled or stopped by the timeout
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    @Override
+    public String toString() {
+        long slowestTime = categoryStatistics.values().stream().mapToLong(CategoryStatistics::getTime).max().orElse(0);
+        return "LearningReport [totalTime=" + getTotalTimeMillis() + "ms, learnedCategories=" + getLearnedCategoriesCount()
+                + ", slowestCategoryTime=" + TimeUnit.NANOSECONDS.toMillis(slowestTime) + "ms, rules=" + rulesCount
+                + ", complete=" + complete + "]";
+    }
+}
@@ -0,0 +1,106 @@
+package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.service;
+
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.Category;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.Rule;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.Comparator.comparingLong;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Collects {@link CategoryStatistics} of the last learning run of a {@link MachineLearning}
+ * and exposes them through JMX.
+ */
+public class LearningStatistics implements LearningProgressListener, LearningStatisticsMXBean {
+
+    private static final int SLOWEST_CATEGORIES_COUNT = 10;
+
+    private final Map<Category, CategoryStatistics> categoryStatistics = new ConcurrentHashMap<>();
+    private volatile boolean learning;
+    private volatile int allCategoriesCount;
+    private volatile long lastLearningTimeMillis;
+
+    @Override
+    public void learningStarted(int allCategories) {
+        categoryStatistics.clear();
+        allCategoriesCount = allCategories;
+        learning = true;
+    }
+
+    @Override
+    public void categoryLearned(Category category, Collection<Rule> rules, CategoryStatistics statistics, int learnedCategories,
+                                int allCategories) {
+        categoryStatistics.put(category, statistics);
+    }
+
+    @Override
+    public void learningFinished(LearningReport report) {
+        lastLearningTimeMillis = report.getTotalTimeMillis();
+        learning = false;
+    }
+
+    public Collection<CategoryStatistics> getCategoryStatistics() {
+        return categoryStatistics.values();
+    }
+
+    @Override
+    public boolean isLearning() {
+        return learning;
+    }
+
+    @Override
+    public int getAllCategoriesCount() {
+        return allCategoriesCount;
+    }
+
+    @Override
+    public int getLearnedCategoriesCount() {
+        return categoryStatistics.size();
+    }
+
+    @Override
+    public long getLastLearningTimeMillis() {
+        return lastLearningTimeMillis;
+    }
+
+    @Override
+    public long getStarsBuilt() {
+        return categoryStatistics.values().stream().mapToLong(CategoryStatistics::getStarsBuilt).sum();
+    }
+
+    @Override
+    public int getPeakStarSize() {
+        return categoryStatistics.values().stream().mapToInt(CategoryStatistics::getPeakStarSize).max().orElse(0);
+    }
+
+    @Override
+    public long getComplexesEvaluated() {
+        return categoryStatistics.values().stream().mapToLong(CategoryStatistics::getComplexesEvaluated).sum();
+    }
+
+    @Override
+    public long getCoverageChecks() {
+        return categoryStatistics.values().stream().mapToLong(CategoryStatistics::getCoverageChecks).sum();
+    }
+
+    @Override
+    public Map<String, Long> getCategoryTimesMillis() {
+        Map<String, Long> times = new HashMap<>();
+        categoryStatistics.forEach((category, statistics) -> times.put(category.toString(), statistics.getTimeMillis()));
+        return times;
+    }
+
+    @Override
+    public List<String> getSlowestCategories() {
+        return categoryStatistics.values().stream()
+                .sorted(comparingLong(CategoryStatistics::getTime).reversed())
+                .limit(SLOWEST_CATEGORIES_COUNT)
+                .map(CategoryStatistics::toString)
+                .collect(toList());
+    }
+}
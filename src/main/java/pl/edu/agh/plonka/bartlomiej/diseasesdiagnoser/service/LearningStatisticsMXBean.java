@@ -0,0 +1,34 @@
+package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.service;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JMX view of the statistics of the last {@link MachineLearning} run. Values of a run
+ * in progress include the categories learned so far.
+ */
+public interface LearningStatisticsMXBean {
+
+    boolean isLearning();
+
+    int getAllCategoriesCount();
+
+    int getLearnedCategoriesCount();
+
+    long getLastLearningTimeMillis();
+
+    long getStarsBuilt();
+
+    int getPeakStarSize();
+
+    long getComplexesEvaluated();
+
+    long getCoverageChecks();
+
+    Map<String, Long> getCategoryTimesMillis();
+
+    /**
+     * @return statistics of the categories which took longest to learn, slowest first
+     */
+    List<String> getSlowestCategories();
+}
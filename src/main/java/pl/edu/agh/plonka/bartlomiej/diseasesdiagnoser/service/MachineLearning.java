@@ -1,15 +1,21 @@
 package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.service;
 
-import com.google.common.collect.Sets;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.exception.PartialStarCreationException;
 import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Entity;
 import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Patient;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.PatientRecord;
 import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.*;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
 
 import static java.lang.String.format;
@@ -17,159 +23,441 @@ import static pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.Category
 import static pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.ComplexComparator.sortStar;
 import static pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.utils.Constants.*;
 
-public class MachineLearning {
+/**
+ * Learns rules with the AQ algorithm, one category at a time on a pool of worker threads.
+ * The pool is owned by the instance, so an instance has to be closed when it is no longer
+ * used.
+ */
+public class MachineLearning implements AutoCloseable {
+
+    private static final String MBEAN_NAME = "pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser:type=LearningStatistics";
 
-    // 0 for restrictive, 1 for general
-    private static final float epsilon = 0.5f;
     private final Logger LOG = LoggerFactory.getLogger(getClass());
+    private final LearningConfig config;
+    private final ForkJoinPool pool;
+    private final Collection<LearningProgressListener> progressListeners = new CopyOnWriteArrayList<>();
+    private final LearningStatistics statistics = new LearningStatistics();
+    private final Map<Category, List<Complex>> learnedComplexes = new ConcurrentHashMap<>();
+    /**
+     * Cancellation of the running learning, or of the next one if none is running.
+     */
+    private final AtomicReference<CancellationToken> cancellation = new AtomicReference<>(new CancellationToken());
+    private volatile boolean learned;
+    private volatile LearningReport lastReport;
     private OntologyWrapper ontology;
 
     public MachineLearning(OntologyWrapper ontology) {
+        this(ontology, new LearningConfig());
+    }
+
+    public MachineLearning(OntologyWrapper ontology, LearningConfig config) {
         this.ontology = ontology;
+        this.config = config;
+        this.pool = new ForkJoinPool(config.getParallelism());
+        addProgressListener(statistics);
+    }
+
+    public LearningConfig getConfig() {
+        return config;
+    }
+
+    public OntologyWrapper getOntology() {
+        return ontology;
+    }
+
+    /**
+     * Learns the rules of another knowledge base from now on. The complexes learned for the
+     * previous ontology are forgotten.
+     */
+    public void setOntology(OntologyWrapper ontology) {
+        if (this.ontology != ontology) {
+            this.ontology = ontology;
+            reset();
+        }
+    }
+
+    /**
+     * Forgets the learned complexes, so that the next relearning learns all categories.
+     */
+    public void reset() {
+        learned = false;
+        learnedComplexes.clear();
+    }
+
+    /**
+     * @return timings of the last learning run or null if nothing was learned yet
+     */
+    public LearningReport getLastReport() {
+        return lastReport;
+    }
+
+    /**
+     * @return statistics of the last learning run, updated while learning runs
+     */
+    public LearningStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Registers the learning statistics in the platform MBean server, replacing statistics
+     * registered by another instance.
+     */
+    public void registerMBean() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(MBEAN_NAME);
+        if (server.isRegistered(name))
+            server.unregisterMBean(name);
+        server.registerMBean(statistics, name);
+    }
+
+    public void addProgressListener(LearningProgressListener listener) {
+        progressListeners.add(listener);
+    }
+
+    public void removeProgressListener(LearningProgressListener listener) {
+        progressListeners.remove(listener);
+    }
+
+    /**
+     * Requests the running learning to stop. Categories stop at the next complex,
+     * and {@link #sequentialCovering(Set)} throws {@link CancellationException}. If no
+     * learning is running, the next run is cancelled; a finished run does not leave the
+     * request for the following one.
+     */
+    public void cancel() {
+        cancellation.get().cancel();
+    }
+
+    /**
+     * Stops the worker threads. The instance cannot be used for learning afterwards.
+     */
+    @Override
+    public void close() {
+        pool.shutdownNow();
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(MBEAN_NAME);
+            if (server.isRegistered(name))
+                server.unregisterMBean(name);
+        } catch (JMException e) {
+            LOG.warn("Failed to unregister learning statistics MBean.", e);
+        }
     }
 
     public Collection<Rule> sequentialCovering(Set<Patient> trainingSet) throws Throwable {
-        ExecutorService service = Executors.newCachedThreadPool();
-        Collection<Callable<Collection<Rule>>> callables = prepareCallables(trainingSet);
-        List<Future<Collection<Rule>>> futures = service.invokeAll(callables);
-        return collectResults(futures);
+        return sequentialCovering(trainingSet, config.getTimeoutMillis(), TimeUnit.MILLISECONDS);
     }
 
-    private Collection<Rule> collectResults(List<Future<Collection<Rule>>> futures) throws Throwable {
+    /**
+     * Learns rules for all categories of the ontology. When the timeout elapses, the
+     * remaining categories are cancelled and the rules learned so far are returned.
+     *
+     * @param timeout maximum learning time, 0 for no limit
+     */
+    public Collection<Rule> sequentialCovering(Set<Patient> trainingSet, long timeout, TimeUnit unit) throws Throwable {
+        CancellationToken token = cancellation.get();
+        try {
+            return learnAll(trainingSet, getDeadline(timeout, unit), token);
+        } finally {
+            cancellation.compareAndSet(token, new CancellationToken());
+        }
+    }
+
+    /**
+     * @return deadline in {@link System#nanoTime()} units, 0 for no limit
+     */
+    private static long getDeadline(long timeout, TimeUnit unit) {
+        return timeout > 0 ? System.nanoTime() + unit.toNanos(timeout) : 0;
+    }
+
+    private Collection<Rule> learnAll(Set<Patient> trainingSet, long deadline, CancellationToken token) throws Throwable {
+        learned = false;
+        learnedComplexes.clear();
+        LearningReport report = new LearningReport(config);
+        Collection<Rule> rules = learn(trainingSet, prepareCategories(), deadline, report, token);
+        learned = !token.isCancelled();
+        return finish(report, simplifyRules(rules), token);
+    }
+
+    /**
+     * Relearns only the given categories and keeps the complexes learned previously for
+     * the others. Falls back to learning all categories if there is no complete previous
+     * run. Both are limited by the timeout of the configuration.
+     *
+     * @return all rules, including the ones of categories which were not relearned
+     */
+    public Collection<Rule> sequentialCovering(Set<Patient> trainingSet, Collection<Category> categories) throws Throwable {
+        CancellationToken token = cancellation.get();
+        try {
+            return relearn(trainingSet, categories, token);
+        } finally {
+            cancellation.compareAndSet(token, new CancellationToken());
+        }
+    }
+
+    private Collection<Rule> relearn(Set<Patient> trainingSet, Collection<Category> categories,
+                                     CancellationToken token) throws Throwable {
+        long deadline = getDeadline(config.getTimeoutMillis(), TimeUnit.MILLISECONDS);
+        if (!learned)
+            return learnAll(trainingSet, deadline, token);
+        learned = false;
+        LearningReport report = new LearningReport(config);
+        learn(trainingSet, new ArrayList<>(categories), deadline, report, token);
+        learned = !token.isCancelled();
+        Collection<Rule> rules = new ArrayList<>();
+        for (Category category : prepareCategories())
+            rules.addAll(generateRules(category, learnedComplexes.getOrDefault(category, Collections.emptyList())));
+        return finish(report, simplifyRules(rules), token);
+    }
+
+    public Collection<Category> findInvalidatedCategories(Collection<Patient> changedPatients) {
+        return findInvalidatedCategories(changedPatients, Collections.emptyList());
+    }
+
+    /**
+     * Finds categories whose previously learned complexes no longer describe the changed
+     * patients, that is a complex covers a patient outside the category or a patient of
+     * the category is not covered by any complex. Categories of deleted patients and
+     * categories which were not learned yet are always invalidated.
+     *
+     * @param deletedPatients loaded patients deleted since the last learning
+     * @return invalidated categories or null if there is no complete previous run
+     */
+    public Collection<Category> findInvalidatedCategories(Collection<Patient> changedPatients,
+                                                          Collection<Patient> deletedPatients) {
+        if (!learned)
+            return null;
+        TrainingSet changedSet = new TrainingSet(PatientRecord.of(changedPatients));
+        TrainingSet deletedSet = new TrainingSet(PatientRecord.of(deletedPatients));
+        Collection<Category> categories = new ArrayList<>();
+        for (Category category : prepareCategories()) {
+            List<Complex> complexes = learnedComplexes.get(category);
+            if (complexes == null || !deletedSet.getPositives(category).isEmpty()
+                    || !isCategoryDescribed(changedSet, category, complexes))
+                categories.add(category);
+        }
+        LOG.info("{} categories invalidated by {} changed and {} deleted patients.", categories.size(),
+                changedPatients.size(), deletedPatients.size());
+        return categories;
+    }
+
+    private boolean isCategoryDescribed(TrainingSet trainingSet, Category category, Collection<Complex> complexes) {
+        BitSet covered = new BitSet(trainingSet.size());
+        for (Complex complex : complexes)
+            covered.or(trainingSet.getCoverage(complex));
+        return covered.equals(trainingSet.getPositives(category));
+    }
+
+    private Collection<Rule> finish(LearningReport report, Collection<Rule> rules, CancellationToken token) {
+        report.finish(rules.size(), !token.isCancelled());
+        lastReport = report;
+        LOG.info("Learning finished: {}", report);
+        for (LearningProgressListener listener : progressListeners)
+            listener.learningFinished(report);
+        return rules;
+    }
+
+    private Collection<Rule> learn(Set<Patient> trainingSet, List<Category> categories, long deadline, LearningReport report,
+                                   CancellationToken token) throws Throwable {
+        TrainingSet encodedTrainingSet = new TrainingSet(PatientRecord.of(trainingSet));
+        PatientDistances distances = new PatientDistances(encodedTrainingSet, ontology.getSymptoms().size(),
+                ontology.getTests().size(), ontology.getDiseases().size());
+        AtomicInteger learnedCategories = new AtomicInteger();
+        for (LearningProgressListener listener : progressListeners)
+            listener.learningStarted(categories.size());
+        List<ForkJoinTask<Collection<Rule>>> tasks = new ArrayList<>();
+        for (Category category : categories) {
+            tasks.add(pool.submit(() -> {
+                long start = System.nanoTime();
+                CategoryStatistics statistics = new CategoryStatistics(category);
+                List<Complex> complexes = sequentialCovering(encodedTrainingSet, distances, category, statistics, token);
+                statistics.finish(System.nanoTime() - start);
+                report.categoryLearned(statistics);
+                learnedComplexes.put(category, complexes);
+                Collection<Rule> rules = generateRules(category, complexes);
+                notifyCategoryLearned(category, rules, statistics, learnedCategories.incrementAndGet(), categories.size());
+                return rules;
+            }));
+        }
+        return collectResults(tasks, deadline, token);
+    }
+
+    private Collection<Rule> collectResults(List<ForkJoinTask<Collection<Rule>>> tasks, long deadline,
+                                            CancellationToken token) throws Throwable {
         Collection<Rule> rules = new HashSet<>();
-        for (Future<Collection<Rule>> future : futures) {
+        boolean timedOut = false;
+        for (ForkJoinTask<Collection<Rule>> task : tasks) {
             try {
-                rules.addAll(future.get());
+                if (deadline > 0 && !timedOut)
+                    rules.addAll(task.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS));
+                else
+                    rules.addAll(task.get());
+            } catch (TimeoutException e) {
+                LOG.info("Learning timeout elapsed. Returning rules learned so far.");
+                timedOut = true;
+                token.cancel();
+                rules.addAll(task.get());
             } catch (ExecutionException e) {
-                throw e.getCause();
+                token.cancel();
+                throw unwrapTaskException(e.getCause());
             }
         }
-        return simplifyRules(rules);
+        if (token.isCancelled() && !timedOut)
+            throw new CancellationException("Learning cancelled.");
+        return rules;
+    }
+
+    /**
+     * Fork join tasks wrap checked exceptions of callables in plain runtime exceptions.
+     */
+    private Throwable unwrapTaskException(Throwable throwable) {
+        while (throwable.getClass() == RuntimeException.class && throwable.getCause() != null)
+            throwable = throwable.getCause();
+        return throwable;
     }
 
-    private Collection<Callable<Collection<Rule>>> prepareCallables(Set<Patient> trainingSet) {
-        Collection<Callable<Collection<Rule>>> callables = new ArrayList<>();
-        callables.addAll(prepareCallable(trainingSet, ontology.getDiseases().values(), HAS_DISEASE));
-        callables.addAll(prepareCallable(trainingSet, ontology.getTests().values(), SHOULD_MAKE_TEST));
-        callables.addAll(prepareCallable(trainingSet, ontology.getTreatments().values(), SHOULD_BE_TREATED_WITH));
-        callables.addAll(prepareCallable(trainingSet, ontology.getCauses().values(), CAUSE_OF_DISEASE));
-        return callables;
+    private List<Category> prepareCategories() {
+        List<Category> categories = new ArrayList<>();
+        categories.addAll(prepareCategories(ontology.getDiseases().values(), HAS_DISEASE));
+        categories.addAll(prepareCategories(ontology.getTests().values(), SHOULD_MAKE_TEST));
+        categories.addAll(prepareCategories(ontology.getTreatments().values(), SHOULD_BE_TREATED_WITH));
+        categories.addAll(prepareCategories(ontology.getCauses().values(), CAUSE_OF_DISEASE));
+        return categories;
     }
 
-    private Collection<Callable<Collection<Rule>>> prepareCallable(Set<Patient> trainingSet,
-                                                                   Collection<Entity> entities,
-                                                                   Category.Predicate categoryPredicate) {
-        Collection<Callable<Collection<Rule>>> callables = new ArrayList<>();
+    private Collection<Category> prepareCategories(Collection<Entity> entities, Category.Predicate categoryPredicate) {
+        Collection<Category> categories = new ArrayList<>();
         for (Entity entity : entities) {
-            callables.add(() -> sequentialCovering(trainingSet, new Category(entity, categoryPredicate)));
+            categories.add(new Category(entity, categoryPredicate));
+        }
+        return categories;
+    }
+
+    private void notifyCategoryLearned(Category category, Collection<Rule> rules, CategoryStatistics statistics,
+                                       int learnedCategories, int allCategories) {
+        for (LearningProgressListener listener : progressListeners)
+            listener.categoryLearned(category, rules, statistics, learnedCategories, allCategories);
+    }
+
+    private List<Complex> sequentialCovering(TrainingSet trainingSet, PatientDistances distances, Category category,
+                                             CategoryStatistics statistics, CancellationToken token)
+            throws PartialStarCreationException {
+        List<Complex> complexes = new ArrayList<>();
+        BitSet positives = trainingSet.getPositives(category);
+        BitSet uncoveredSet = trainingSet.all();
+        while (!token.isCancelled() && positives.intersects(uncoveredSet) && !isRulesLimitReached(complexes)) {
+            Complex complex = findComplex(trainingSet, distances, uncoveredSet, category, statistics, token);
+            if (complex == null)
+                break;
+            uncoveredSet.andNot(trainingSet.getCoverage(complex));
+            complexes.add(complex);
         }
-        return callables;
+        return complexes;
     }
 
-    private Collection<Rule> sequentialCovering(Set<Patient> trainingSet, Category category) throws PartialStarCreationException {
+    private boolean isRulesLimitReached(List<Complex> complexes) {
+        return config.getMaxRulesPerCategory() > 0 && complexes.size() >= config.getMaxRulesPerCategory();
+    }
+
+    private Collection<Rule> generateRules(Category category, List<Complex> complexes) {
         Collection<Rule> rules = new HashSet<>();
-        Set<Patient> uncoveredSet = new HashSet<>(trainingSet);
         int ruleIdx = 1;
-        while (assertPatientWithCategoryInSet(uncoveredSet, category)) {
-            Complex complex = findComplex(trainingSet, uncoveredSet, category);
-            removeCoveredExamples(uncoveredSet, complex);
-            Rule rule = complex.generateRule(generateRuleName(category, ruleIdx++), category, ontology);
-            rules.add(rule);
-        }
+        for (Complex complex : complexes)
+            rules.add(complex.generateRule(generateRuleName(category, ruleIdx++), category, ontology));
         return rules;
     }
 
-    private Complex findComplex(Set<Patient> trainingSet, Set<Patient> uncoveredSet, Category category) throws PartialStarCreationException {
+    private Complex findComplex(TrainingSet trainingSet, PatientDistances distances, BitSet uncoveredSet, Category category,
+                                CategoryStatistics statistics, CancellationToken token) throws PartialStarCreationException {
         LOG.debug("findComplex");
         Star star = new Star();
-        Patient positiveSeed = positiveSeed(trainingSet, uncoveredSet, category);
-        Patient negativeSeed = negativeSeed(trainingSet, star, positiveSeed, category);
+        statistics.starBuilt();
+        EncodedPatient positiveSeed = positiveSeed(trainingSet, distances, uncoveredSet, category);
+        EncodedPatient negativeSeed = negativeSeed(trainingSet, distances, star, positiveSeed, category, statistics);
+        Complex bestComplex = star.get(0);
         while (positiveSeed != null && negativeSeed != null) {
-            Collection<Complex> partialStar = partialStar(positiveSeed, negativeSeed);
+            if (token.isCancelled())
+                return null;
+            Collection<Complex> partialStar = partialStar(positiveSeed.getPatient(), negativeSeed.getPatient());
             if (partialStar.isEmpty()) {
                 LOG.debug("Partial star is empty");
-                throw new PartialStarCreationException(positiveSeed, negativeSeed);
+                throw new PartialStarCreationException(positiveSeed.getPatient(), negativeSeed.getPatient());
             }
-            star.intersection(partialStar);
-            star.deleteNarrowComplexes();
-            sortStar(star, category, trainingSet);
-            star.leaveFirstElements(5);
-            negativeSeed = negativeSeed(trainingSet, star, positiveSeed, category);
+            partialStar.forEach(complex -> getCoverage(trainingSet, complex, statistics));
+            star.intersection(partialStar, config.getMaxSelectorsPerComplex());
+            if (star.isEmpty()) {
+                LOG.debug("All complexes exceed maximum number of selectors");
+                return bestComplex;
+            }
+            statistics.starSpecialized(star.size());
+            star.forEach(complex -> getCoverage(trainingSet, complex, statistics));
+            statistics.complexesEvaluated(star.size());
+            sortStar(star, category, trainingSet, config.getCoveredPositivesWeight(), config.getUncoveredNegativesWeight());
+            star.leaveFirstElements(config.getBeamWidth());
+            bestComplex = star.get(0);
+            negativeSeed = negativeSeed(trainingSet, distances, star, positiveSeed, category, statistics);
         }
-        return star.get(0);
+        return bestComplex;
+    }
+
+    private BitSet getCoverage(TrainingSet trainingSet, Complex complex, CategoryStatistics statistics) {
+        if (!trainingSet.hasCoverage(complex))
+            statistics.coverageChecked(trainingSet.size());
+        return trainingSet.getCoverage(complex);
     }
 
-    private Patient positiveSeed(Set<Patient> trainingSet, Set<Patient> uncoveredSet, Category category) {
+    /**
+     * @return uncovered patient of the category which is the most distant from the covered patients
+     */
+    private EncodedPatient positiveSeed(TrainingSet trainingSet, PatientDistances distances, BitSet uncoveredSet, Category category) {
         LOG.debug("positiveSeed");
         if (uncoveredSet.isEmpty())
             return null;
-        Set<Patient> coveredSet = Sets.difference(trainingSet, uncoveredSet);
-        Set<Patient> categoryCoveredSet = new HashSet<>();
-        for (Patient uncovered : uncoveredSet) {
-            if (category.assertPatientInCategory(uncovered)) {
-                calculateDistance(uncovered, coveredSet);
-                categoryCoveredSet.add(uncovered);
+        BitSet categoryUncoveredSet = (BitSet) uncoveredSet.clone();
+        categoryUncoveredSet.and(trainingSet.getPositives(category));
+        EncodedPatient positiveSeed = null;
+        float positiveSeedDistance = 0;
+        for (int i = categoryUncoveredSet.nextSetBit(0); i >= 0; i = categoryUncoveredSet.nextSetBit(i + 1)) {
+            EncodedPatient uncovered = trainingSet.get(i);
+            float distance = 0;
+            for (int j = uncoveredSet.nextClearBit(0); j < trainingSet.size(); j = uncoveredSet.nextClearBit(j + 1))
+                distance += distances.distance(uncovered, trainingSet.get(j));
+            if (positiveSeed == null || distance > positiveSeedDistance) {
+                positiveSeed = uncovered;
+                positiveSeedDistance = distance;
             }
         }
-        return Collections.max(categoryCoveredSet);
+        return positiveSeed;
     }
 
-    private Patient negativeSeed(Collection<Patient> trainingSet, Star star, Patient positiveSeed, Category category) {
+    /**
+     * @return patient from a different category covered by the star which is the closest to the positive seed
+     */
+    private EncodedPatient negativeSeed(TrainingSet trainingSet, PatientDistances distances, Star star, EncodedPatient positiveSeed,
+                                        Category category, CategoryStatistics statistics) {
         LOG.debug("negativeSeed");
-        List<Patient> negativeSeeds = new ArrayList<>();
-        for (Patient patient : trainingSet) {
-            if (star.isPatientCovered(patient) && !category.assertPatientInCategory(patient)) {
-                negativeSeeds.add(patient);
+        BitSet negativeSet = new BitSet(trainingSet.size());
+        for (Complex complex : star)
+            negativeSet.or(getCoverage(trainingSet, complex, statistics));
+        negativeSet.andNot(trainingSet.getPositives(category));
+        EncodedPatient negativeSeed = null;
+        float negativeSeedDistance = 0;
+        for (int i = negativeSet.nextSetBit(0); i >= 0; i = negativeSet.nextSetBit(i + 1)) {
+            EncodedPatient negative = trainingSet.get(i);
+            float distance = distances.distance(negative, positiveSeed);
+            if (negativeSeed == null || distance < negativeSeedDistance) {
+                negativeSeed = negative;
+                negativeSeedDistance = distance;
             }
         }
-        if (negativeSeeds.isEmpty())
-            return null;
-        Set<Patient> positiveSeedSingleton = Collections.singleton(positiveSeed);
-        for (Patient negativeSeed : negativeSeeds)
-            calculateDistance(negativeSeed, positiveSeedSingleton);
-        return Collections.min(negativeSeeds);
-    }
-
-    private void calculateDistance(Patient patient, Collection<Patient> otherPatients) {
-        LOG.debug("calculateDistance");
-        if (otherPatients.isEmpty()) {
-            LOG.debug("No other patients. Set patient distance to 0");
-            patient.setEvaluation(0);
-            return;
-        }
-        int symptomDiff = 0;
-        int negTestDiff = 0;
-        int disDiff = 0;
-        int ageDiff = 0;
-        int heightDiff = 0;
-        int weightDiff = 0;
-        for (Patient otherPatient : otherPatients) {
-            symptomDiff += Sets.symmetricDifference(new HashSet<>(patient.getSymptoms()), new HashSet<>(otherPatient.getSymptoms())).size();
-            negTestDiff += Sets.symmetricDifference(new HashSet<>(patient.getNegativeTests()), new HashSet<>(otherPatient.getNegativeTests())).size();
-            disDiff += Sets.symmetricDifference(new HashSet<>(patient.getPreviousDiseases()),
-                    new HashSet<>(otherPatient.getPreviousDiseases())).size();
-            if (patient.getAge() >= 0 && otherPatient.getAge() >= 0)
-                ageDiff += Math.abs(patient.getAge() - otherPatient.getAge());
-            if (patient.getHeight() >= 0 && otherPatient.getHeight() >= 0)
-                heightDiff += Math.abs(patient.getHeight() - otherPatient.getHeight());
-            if (patient.getWeight() >= 0 && otherPatient.getWeight() >= 0)
-                weightDiff += Math.abs(patient.getWeight() - otherPatient.getWeight());
-        }
-        float symptomEv = (float) symptomDiff / (otherPatients.size() * ontology.getSymptoms().size());
-        float negTestEv = (float) negTestDiff / (otherPatients.size() * ontology.getTests().size());
-        float disEv = (float) disDiff / (otherPatients.size() * ontology.getDiseases().size());
-        float ageEv = (float) ageDiff / (otherPatients.size() * (PATIENT_MAX_AGE - PATIENT_MIN_AGE));
-        float heightEv = (float) heightDiff / (otherPatients.size() * (PATIENT_MAX_HEIGHT - PATIENT_MIN_HEIGHT));
-        float weightEv = (float) weightDiff / (otherPatients.size() * (PATIENT_MAX_WEIGHT - PATIENT_MIN_WEIGHT));
-
-        patient.setEvaluation(symptomEv + negTestEv + disEv + ageEv + heightEv + weightEv);
+        return negativeSeed;
     }
 
-    private Collection<Complex> partialStar(Patient positivePatient, Patient negativePatient) {
+    private Collection<Complex> partialStar(PatientRecord positivePatient, PatientRecord negativePatient) {
         Collection<Complex> resultComplexes = new ArrayList<>();
-        resultComplexes.addAll(createComplexes(positivePatient.getSymptoms(), negativePatient.getSymptoms(), Complex::setSymptomSelector));
-        resultComplexes.addAll(createComplexes(positivePatient.getNegativeTests(), negativePatient.getNegativeTests(), Complex::setNegativeTestsSelector));
-        resultComplexes.addAll(createComplexes(positivePatient.getPreviousDiseases(), negativePatient.getPreviousDiseases(), Complex::setPreviousDiseasesSelector));
+        resultComplexes.addAll(createComplexes(positivePatient.getSymptoms(), negativePatient.getSymptoms(), ontology.getSymptoms(), Complex::setSymptomSelector));
+        resultComplexes.addAll(createComplexes(positivePatient.getNegativeTests(), negativePatient.getNegativeTests(), ontology.getTests(), Complex::setNegativeTestsSelector));
+        resultComplexes.addAll(createComplexes(positivePatient.getPreviousDiseases(), negativePatient.getPreviousDiseases(), ontology.getDiseases(), Complex::setPreviousDiseasesSelector));
 
         Complex ageComplex = createLinearComplex(positivePatient.getAge(), negativePatient.getAge(), Complex::setAgeSelector);
         Complex heightComplex = createLinearComplex(positivePatient.getHeight(), negativePatient.getHeight(), Complex::setHeightSelector);
@@ -182,35 +470,29 @@ public class MachineLearning {
         return resultComplexes;
     }
 
-    private void removeCoveredExamples(Collection<Patient> trainingSet, Complex complex) {
-        LOG.debug("removeCoveredExamples");
-        trainingSet.removeIf(complex::isPatientCovered);
-    }
-
-    private Collection<Complex> createComplexes(Collection<Entity> positiveEntities, Collection<Entity> negativeEntities,
+    private Collection<Complex> createComplexes(String[] positiveEntities, String[] negativeEntities, Map<String, Entity> entities,
                                                 BiConsumer<Complex, NominalSelector<Entity>> complexSetter) {
         ArrayList<Complex> complexes = new ArrayList<>();
-        if (!positiveEntities.isEmpty()) {
-            for (Entity entity : positiveEntities) {
-                if (!negativeEntities.contains(entity)) {
-                    Complex complex = createComplex(entity, complexSetter);
-                    complexes.add(complex);
-                }
+        for (String entityID : positiveEntities) {
+            if (!PatientRecord.contains(negativeEntities, entityID)) {
+                Entity entity = entities.get(entityID);
+                Complex complex = createComplex(entity != null ? entity : new Entity(entityID), complexSetter);
+                complexes.add(complex);
             }
         }
         return complexes;
     }
 
     private Complex createComplex(Entity entity, BiConsumer<Complex, NominalSelector<Entity>> complexSetter) {
-        NominalSelector<Entity> selector = new NominalSelector<>();
+        NominalSelector<Entity> selector = new NominalSelector<>(1);
         selector.add(entity);
         Complex complex = new Complex();
         complexSetter.accept(complex, selector);
         return complex;
     }
 
-    private Complex createLinearComplex(int posVal, int negVal, BiConsumer<Complex, LinearSelector<Integer>> complexSetter) {
-        LinearSelector<Integer> selector = createLinearSelector(posVal, negVal);
+    private Complex createLinearComplex(int posVal, int negVal, BiConsumer<Complex, IntRangeSelector> complexSetter) {
+        IntRangeSelector selector = createLinearSelector(posVal, negVal);
         if (selector != null) {
             Complex complex = new Complex();
             complexSetter.accept(complex, selector);
@@ -219,28 +501,24 @@ public class MachineLearning {
         return null;
     }
 
-    private LinearSelector createLinearSelector(int posValue, int negValue) {
+    private IntRangeSelector createLinearSelector(int posValue, int negValue) {
         if (posValue >= 0 && negValue >= 0 && posValue != negValue) {
-            int midValue = Math.round(posValue + (negValue - posValue) * epsilon);
+            int midValue = Math.round(posValue + (negValue - posValue) * config.getEpsilon());
             if (negValue < posValue) {
                 if (midValue == negValue)
-                    return LinearSelector.greaterThanSelector(midValue);
+                    return IntRangeSelector.greaterThanSelector(midValue);
                 else
-                    return LinearSelector.atLeastSelector(midValue);
+                    return IntRangeSelector.atLeastSelector(midValue);
             } else {
                 if (midValue == negValue)
-                    return LinearSelector.lessThanSelector(midValue);
+                    return IntRangeSelector.lessThanSelector(midValue);
                 else
-                    return LinearSelector.atMostSelector(midValue);
+                    return IntRangeSelector.atMostSelector(midValue);
             }
         }
         return null;
     }
 
-    private boolean assertPatientWithCategoryInSet(Set<Patient> patientsSet, Category category) {
-        return patientsSet.stream().anyMatch(category::assertPatientInCategory);
-    }
-
     private String generateRuleName(Category category, int ruleIdx) {
         String predicate;
         switch (category.getPredicate()) {
@@ -277,4 +555,19 @@ public class MachineLearning {
         return rulesList;
     }
 
+    /**
+     * Cancellation request of one learning run, shared by the tasks of its categories.
+     */
+    private static class CancellationToken {
+
+        private volatile boolean cancelled;
+
+        void cancel() {
+            cancelled = true;
+        }
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+    }
 }
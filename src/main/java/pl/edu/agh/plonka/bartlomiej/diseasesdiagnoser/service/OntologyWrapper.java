@@ -2,33 +2,37 @@ package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.service;
 
 import com.clarkparsia.pellet.owlapiv3.PelletReasonerFactory;
 import com.google.common.collect.Range;
+import org.mindswap.pellet.PelletOptions;
 import org.semanticweb.owlapi.apibinding.OWLManager;
 import org.semanticweb.owlapi.dlsyntax.renderer.DLSyntaxObjectRenderer;
 import org.semanticweb.owlapi.io.OWLObjectRenderer;
 import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.reasoner.InferenceType;
 import org.semanticweb.owlapi.reasoner.OWLReasoner;
-import org.semanticweb.owlapi.reasoner.OWLReasonerFactory;
 import org.semanticweb.owlapi.reasoner.SimpleConfiguration;
 import org.semanticweb.owlapi.search.EntitySearcher;
 import org.semanticweb.owlapi.util.OWLEntityRemover;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.swrlapi.core.SWRLAPIOWLOntology;
-import org.swrlapi.core.SWRLRuleEngine;
-import org.swrlapi.core.SWRLRuleRenderer;
 import org.swrlapi.factory.SWRLAPIFactory;
 import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.exception.CreateRuleException;
 import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Entity;
 import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Patient;
 import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.*;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.utils.AtomicFiles;
 import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.utils.NameUtils;
 import uk.ac.manchester.cs.owl.owlapi.OWLLiteralImplPlain;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.regex.Matcher;
@@ -43,19 +47,19 @@ public class OntologyWrapper {
     private static final Integer MAX_AGE = 100;
     private static final Pattern diseasePattern = Pattern.compile("(?<diseaseID>\\w+)Disease(?<number>\\d+)");
     private static final Random random = new Random();
+
     private final Logger LOG = LoggerFactory.getLogger(getClass());
     private final OWLObjectRenderer renderer = new DLSyntaxObjectRenderer();
-    private final EntitiesLoader entitiesLoader;
     private final RulesManager rulesManager;
     private final OWLOntology ontology;
     private final OWLDataFactory factory;
     private final PrefixManager prefixManager;
     private final OWLDocumentFormat ontologyFormat;
     private final OWLOntologyManager ontologyManager;
-    private final OWLReasoner reasoner;
-    private final SWRLRuleEngine ruleEngine;
-    private final SWRLAPIOWLOntology ruleOntology;
-    private final SWRLRuleRenderer ruleRenderer;
+    private final FutureTask<OWLReasoner> reasonerTask = new FutureTask<>(this::createReasoner);
+    private final FutureTask<SWRLAPIOWLOntology> ruleOntologyTask = new FutureTask<>(this::createRuleOntology);
+    private final RuleEvaluator ruleEvaluator = new RuleEvaluator();
+    private InferenceMode inferenceMode = InferenceMode.REASONER;
     private Map<String, Entity> classes = new HashMap<>();
     private OWLEntityRemover remover;
     private Map<String, Entity> symptoms = new HashMap<>();
@@ -63,75 +67,166 @@ public class OntologyWrapper {
     private Map<String, Entity> tests = new HashMap<>();
     private Map<String, Entity> treatments = new HashMap<>();
     private Map<String, Entity> causes = new HashMap<>();
-    private Collection<Rule> rules = new ArrayList<>();
     private OntologyProperties properties;
 
     public OntologyWrapper(String baseURL) throws OWLOntologyCreationException {
-        ontologyManager = OWLManager.createOWLOntologyManager();
+        ontologyManager = OWLManager.createConcurrentOWLOntologyManager();
         factory = ontologyManager.getOWLDataFactory();
         ontology = ontologyManager.createOntology(IRI.create(baseURL));
         ontologyFormat = ontologyManager.getOntologyFormat(ontology);
         prefixManager = ontologyFormat.asPrefixOWLOntologyFormat();
         prefixManager.setDefaultPrefix(baseURL + "#");
-        OWLReasonerFactory reasonerFactory = PelletReasonerFactory.getInstance();
-        reasoner = reasonerFactory.createReasoner(ontology, new SimpleConfiguration());
         remover = new OWLEntityRemover(Collections.singleton(ontology));
-        ruleEngine = SWRLAPIFactory.createSWRLRuleEngine(ontology);
-        ruleOntology = ruleEngine.getSWRLAPIOWLOntology();
-        ruleRenderer = ruleOntology.createSWRLRuleRenderer();
         properties = new OntologyProperties(factory, prefixManager);
-        entitiesLoader = new EntitiesLoader(ontology, renderer, factory, reasoner);
-        rulesManager = new RulesManager(ruleOntology);
+        rulesManager = new RulesManager(this::getRuleOntology);
+        startReasoning();
     }
 
     public OntologyWrapper(InputStream inputStream) throws OWLOntologyCreationException {
-        ontologyManager = OWLManager.createOWLOntologyManager();
+        ontologyManager = OWLManager.createConcurrentOWLOntologyManager();
         factory = ontologyManager.getOWLDataFactory();
         ontology = ontologyManager.loadOntologyFromOntologyDocument(inputStream);
         ontologyFormat = ontologyManager.getOntologyFormat(ontology);
         prefixManager = ontologyFormat.asPrefixOWLOntologyFormat();
         String baseURL = ontology.getOntologyID().getOntologyIRI().get().toString();
         prefixManager.setDefaultPrefix(baseURL + "#");
-        OWLReasonerFactory reasonerFactory = PelletReasonerFactory.getInstance();
-        reasoner = reasonerFactory.createReasoner(ontology, new SimpleConfiguration());
         remover = new OWLEntityRemover(Collections.singleton(ontology));
-        ruleEngine = SWRLAPIFactory.createSWRLRuleEngine(ontology);
-        ruleOntology = ruleEngine.getSWRLAPIOWLOntology();
-        ruleRenderer = ruleOntology.createSWRLRuleRenderer();
         properties = new OntologyProperties(factory, prefixManager);
-        entitiesLoader = new EntitiesLoader(ontology, renderer, factory, reasoner);
-        rulesManager = new RulesManager(ruleOntology);
+        rulesManager = new RulesManager(this::getRuleOntology);
+        startReasoning();
         loadData();
     }
 
     public OntologyWrapper(File file) throws OWLOntologyCreationException {
-        ontologyManager = OWLManager.createOWLOntologyManager();
+        this(file, null);
+    }
+
+    /**
+     * Loads the ontology from the file, with classes, entities and rules taken from the
+     * snapshot of the file if it is not null. The reasoner and the rule engine are then
+     * created in the background and only the operations which need them wait for it.
+     */
+    public OntologyWrapper(File file, KnowledgeBaseSnapshot snapshot) throws OWLOntologyCreationException {
+        ontologyManager = OWLManager.createConcurrentOWLOntologyManager();
         factory = ontologyManager.getOWLDataFactory();
         ontology = ontologyManager.loadOntologyFromOntologyDocument(file);
         ontologyFormat = ontologyManager.getOntologyFormat(ontology);
         prefixManager = ontologyFormat.asPrefixOWLOntologyFormat();
         String baseURL = ontology.getOntologyID().getOntologyIRI().get().toString();
         prefixManager.setDefaultPrefix(baseURL + "#");
-        OWLReasonerFactory reasonerFactory = PelletReasonerFactory.getInstance();
-        reasoner = reasonerFactory.createReasoner(ontology, new SimpleConfiguration());
         remover = new OWLEntityRemover(Collections.singleton(ontology));
-        ruleEngine = SWRLAPIFactory.createSWRLRuleEngine(ontology);
-        ruleOntology = ruleEngine.getSWRLAPIOWLOntology();
-        ruleRenderer = ruleOntology.createSWRLRuleRenderer();
         properties = new OntologyProperties(factory, prefixManager);
-        entitiesLoader = new EntitiesLoader(ontology, renderer, factory, reasoner);
-        rulesManager = new RulesManager(ruleOntology);
-        loadData();
+        rulesManager = new RulesManager(this::getRuleOntology);
+        startReasoning();
+        if (snapshot != null)
+            loadData(snapshot);
+        else
+            loadData();
     }
 
     private void loadData() {
+        EntitiesLoader entitiesLoader = new EntitiesLoader(ontology, renderer, factory, getReasoner());
         classes = entitiesLoader.loadClasses();
-        symptoms = entitiesLoader.loadInstances(properties.symptomClass, classes);
-        diseases = entitiesLoader.loadInstances(properties.diseaseClass, classes);
-        tests = entitiesLoader.loadInstances(properties.testingClass, classes);
-        treatments = entitiesLoader.loadInstances(properties.treatmentClass, classes);
-        causes = entitiesLoader.loadInstances(properties.causeClass, classes);
-        rules = rulesManager.loadRules(classes, symptoms, diseases, tests, treatments, causes);
+        Map<OWLClass, Map<String, Entity>> instances = entitiesLoader.loadInstances(Arrays.asList(properties.symptomClass,
+                properties.diseaseClass, properties.testingClass, properties.treatmentClass, properties.causeClass), classes);
+        symptoms = instances.get(properties.symptomClass);
+        diseases = instances.get(properties.diseaseClass);
+        tests = instances.get(properties.testingClass);
+        treatments = instances.get(properties.treatmentClass);
+        causes = instances.get(properties.causeClass);
+        ruleEvaluator.addRules(rulesManager.loadRules(classes, symptoms, diseases, tests, treatments, causes));
+    }
+
+    private void loadData(KnowledgeBaseSnapshot snapshot) {
+        classes = snapshot.getClasses();
+        symptoms = snapshot.getSymptoms();
+        diseases = snapshot.getDiseases();
+        tests = snapshot.getTests();
+        treatments = snapshot.getTreatments();
+        causes = snapshot.getCauses();
+        rulesManager.indexRules(snapshot.getRules());
+        ruleEvaluator.addRules(snapshot.getRules());
+    }
+
+    private void startReasoning() {
+        Thread thread = new Thread(() -> {
+            reasonerTask.run();
+            ruleOntologyTask.run();
+        }, "reasoner-initialization");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Enables incremental consistency checking of Pellet, which uses the completion queue.
+     * Assertions added to a patient are then checked on flush without reloading the whole
+     * knowledge base. Incremental deletion is left disabled, as it needs tracing of every
+     * inference, so edits which remove assertions are still checked from scratch.
+     * <p>
+     * Pellet reads its options from static fields, so this changes every Pellet reasoner
+     * created afterwards in the JVM, including reasoners of other code, and the previous
+     * values are not restored.
+     */
+    private static synchronized void configurePellet() {
+        PelletOptions.USE_COMPLETION_QUEUE = true;
+        PelletOptions.USE_INCREMENTAL_CONSISTENCY = true;
+    }
+
+    private OWLReasoner createReasoner() {
+        long start = System.nanoTime();
+        configurePellet();
+        OWLReasoner reasoner = PelletReasonerFactory.getInstance().createReasoner(ontology, new SimpleConfiguration());
+        reasoner.precomputeInferences(InferenceType.CLASS_ASSERTIONS);
+        LOG.info("Reasoner initialized in {} ms.", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return reasoner;
+    }
+
+    private SWRLAPIOWLOntology createRuleOntology() {
+        return SWRLAPIFactory.createSWRLRuleEngine(ontology).getSWRLAPIOWLOntology();
+    }
+
+    /**
+     * @return true if the reasoner and the rule engine are initialized, so that inference
+     * and changes of the ontology do not wait for them
+     */
+    public boolean isReasonerReady() {
+        return reasonerTask.isDone() && ruleOntologyTask.isDone();
+    }
+
+    private OWLReasoner getReasoner() {
+        return await(reasonerTask);
+    }
+
+    SWRLAPIOWLOntology getRuleOntology() {
+        return await(ruleOntologyTask);
+    }
+
+    /**
+     * Waits until the background initialization stops reading the ontology, before it is
+     * changed.
+     */
+    private void awaitReasoner() {
+        getReasoner();
+        getRuleOntology();
+    }
+
+    private static <T> T await(FutureTask<T> task) {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the reasoner.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Reasoner initialization failed.", e.getCause());
+        }
+    }
+
+    public InferenceMode getInferenceMode() {
+        return inferenceMode;
+    }
+
+    public void setInferenceMode(InferenceMode inferenceMode) {
+        this.inferenceMode = inferenceMode;
     }
 
     public Map<String, Entity> getClasses() {
@@ -159,10 +254,20 @@ public class OntologyWrapper {
     }
 
     private Patient getPatient(OWLIndividual patientInd) {
-        Patient patient = new Patient(renderer.render(patientInd));
+        Patient patient = getPatientStub(patientInd);
+        loadPatientDetails(patientInd, patient);
+        return patient;
+    }
 
+    private Patient getPatientStub(OWLIndividual patientInd) {
+        Patient patient = new Patient(renderer.render(patientInd));
         setPatientStringProperty(patientInd, properties.firstNameProperty, patient::setFirstName);
         setPatientStringProperty(patientInd, properties.lastNameProperty, patient::setLastName);
+        patient.setLoaded(false);
+        return patient;
+    }
+
+    private void loadPatientDetails(OWLIndividual patientInd, Patient patient) {
         setPatientIntegerProperty(patientInd, properties.ageProperty, patient::setAge);
         setPatientIntegerProperty(patientInd, properties.heightProperty, patient::setHeight);
         setPatientIntegerProperty(patientInd, properties.weightProperty, patient::setWeight);
@@ -174,52 +279,203 @@ public class OntologyWrapper {
         setPatientObjectProperty(patientInd, properties.treatmentProperty, treatments, patient::addTreatment);
         setPatientObjectProperty(patientInd, properties.causeProperty, causes, patient::addCause);
         setPatientObjectProperty(patientInd, properties.previousOrCurrentDiseaseProperty, diseases, patient::addPreviousOrCurrentDisease);
-
-        return patient;
+        patient.setLoaded(true);
     }
 
     public void addPatient(Patient patient) {
+        addPatientAxioms(patient);
+        inferPatients(Collections.singleton(patient));
+    }
+
+    /**
+     * Adds all patients to the ontology and infers their properties with a single
+     * reasoner flush.
+     */
+    public void addPatients(Collection<Patient> patients) {
+        patients.forEach(this::addPatientAxioms);
+        inferPatients(patients);
+    }
+
+    private void addPatientAxioms(Patient patient) {
+        awaitReasoner();
         generatePatientID(patient);
+        ontologyManager.addAxioms(ontology, getPatientAxioms(patient));
+    }
+
+    private Set<OWLAxiom> getPatientAxioms(Patient patient) {
         OWLNamedIndividual patientInd = factory.getOWLNamedIndividual(patient.getID(), prefixManager);
+        Set<OWLAxiom> axioms = new HashSet<>();
 
-        setIndClass(properties.patientClass, patientInd);
+        axioms.add(factory.getOWLClassAssertionAxiom(properties.patientClass, patientInd));
 
-        setPatientIndStringProperty(patientInd, properties.firstNameProperty, patient.getFirstName());
-        setPatientIndStringProperty(patientInd, properties.lastNameProperty, patient.getLastName());
-        setPatientIndIntegerProperty(patientInd, properties.ageProperty, patient.getAge());
-        setPatientIndIntegerProperty(patientInd, properties.heightProperty, patient.getHeight());
-        setPatientIndIntegerProperty(patientInd, properties.weightProperty, patient.getWeight());
+        addPatientIndStringProperty(axioms, patientInd, properties.firstNameProperty, patient.getFirstName());
+        addPatientIndStringProperty(axioms, patientInd, properties.lastNameProperty, patient.getLastName());
+        addPatientIndIntegerProperty(axioms, patientInd, properties.ageProperty, patient.getAge());
+        addPatientIndIntegerProperty(axioms, patientInd, properties.heightProperty, patient.getHeight());
+        addPatientIndIntegerProperty(axioms, patientInd, properties.weightProperty, patient.getWeight());
 
-        setPatientIndObjectProperty(patientInd, properties.symptomProperty, patient.getSymptoms());
-        setPatientIndObjectProperty(patientInd, properties.diseaseProperty, patient.getDiseases());
-        setPatientIndObjectProperty(patientInd, properties.testProperty, patient.getTests());
-        setPatientIndObjectProperty(patientInd, properties.negativeTestProperty, patient.getNegativeTests());
-        setPatientIndObjectProperty(patientInd, properties.treatmentProperty, patient.getTreatments());
-        setPatientIndObjectProperty(patientInd, properties.causeProperty, patient.getCauses());
-        setPatientIndObjectProperty(patientInd, properties.previousOrCurrentDiseaseProperty, patient.getPreviousDiseases());
+        addPatientIndObjectProperty(axioms, patientInd, properties.symptomProperty, patient.getSymptoms());
+        addPatientIndObjectProperty(axioms, patientInd, properties.diseaseProperty, patient.getDiseases());
+        addPatientIndObjectProperty(axioms, patientInd, properties.testProperty, patient.getTests());
+        addPatientIndObjectProperty(axioms, patientInd, properties.negativeTestProperty, patient.getNegativeTests());
+        addPatientIndObjectProperty(axioms, patientInd, properties.treatmentProperty, patient.getTreatments());
+        addPatientIndObjectProperty(axioms, patientInd, properties.causeProperty, patient.getCauses());
+        addPatientIndObjectProperty(axioms, patientInd, properties.previousOrCurrentDiseaseProperty, patient.getPreviousDiseases());
 
-        getInferredPatient(patient);
+        return axioms;
     }
 
+    /**
+     * Replaces the stored patient with the edited one. Only axioms which differ are
+     * removed and added, so the reasoner can update its model incrementally. The patient
+     * is inferred again only if the changes may affect its inferred properties.
+     */
     public Patient updatePatient(Patient patient) {
-        deleteEntity(patient);
-        addPatient(patient);
-        return getInferredPatient(patient);
+        awaitReasoner();
+        List<OWLAxiomChange> changes = getPatientChanges(patient);
+        ontologyManager.applyChanges(changes);
+        if (affectsInferredProperties(changes))
+            inferPatients(Collections.singleton(patient));
+        return patient;
+    }
+
+    /**
+     * Replaces all stored patients with the edited ones in one batch of changes and
+     * infers their properties with a single reasoner flush.
+     */
+    public Collection<Patient> updatePatients(Collection<Patient> patients) {
+        awaitReasoner();
+        List<OWLOntologyChange> changes = new ArrayList<>();
+        for (Patient patient : patients)
+            changes.addAll(getPatientChanges(patient));
+        ontologyManager.applyChanges(changes);
+        return inferPatients(patients);
+    }
+
+    /**
+     * With native rule evaluation, inferred properties depend only on the rules referencing
+     * the changed entities and properties and on the asserted categories of the patient.
+     */
+    private boolean affectsInferredProperties(List<OWLAxiomChange> changes) {
+        if (changes.isEmpty())
+            return false;
+        if (inferenceMode == InferenceMode.REASONER || !ruleEvaluator.isComplete())
+            return true;
+        Set<Entity> entities = new HashSet<>();
+        Set<String> linearProperties = new HashSet<>();
+        for (OWLAxiomChange change : changes) {
+            OWLAxiom axiom = change.getAxiom();
+            if (axiom instanceof OWLObjectPropertyAssertionAxiom) {
+                OWLObjectPropertyAssertionAxiom assertion = (OWLObjectPropertyAssertionAxiom) axiom;
+                if (isInferredProperty(assertion.getProperty()))
+                    return true;
+                entities.add(new Entity(renderer.render(assertion.getObject())));
+            } else if (axiom instanceof OWLDataPropertyAssertionAxiom) {
+                linearProperties.add(renderer.render(((OWLDataPropertyAssertionAxiom) axiom).getProperty()));
+            } else if (!(axiom instanceof OWLClassAssertionAxiom)) {
+                return true;
+            }
+        }
+        return !rulesManager.getRuleIndex().getAffectedRules(entities, linearProperties).isEmpty();
+    }
+
+    private boolean isInferredProperty(OWLObjectPropertyExpression property) {
+        return property.equals(properties.diseaseProperty)
+                || property.equals(properties.testProperty)
+                || property.equals(properties.treatmentProperty)
+                || property.equals(properties.causeProperty);
+    }
+
+    /**
+     * @return changes which replace the stored axioms of the patient with the axioms of its
+     * properties; none for a patient which is not loaded
+     */
+    List<OWLAxiomChange> getPatientChanges(Patient patient) {
+        if (!patient.isLoaded())
+            return Collections.emptyList();
+        generatePatientID(patient);
+        OWLNamedIndividual patientInd = factory.getOWLNamedIndividual(patient.getID(), prefixManager);
+        Set<OWLAxiom> storedAxioms = new HashSet<>(ontology.getReferencingAxioms(patientInd));
+        storedAxioms.addAll(ontology.getAnnotationAssertionAxioms(patientInd.getIRI()));
+        Set<OWLAxiom> axioms = getPatientAxioms(patient);
+
+        List<OWLAxiomChange> changes = new ArrayList<>();
+        for (OWLAxiom axiom : storedAxioms) {
+            if (!axioms.contains(axiom) && !(axiom instanceof OWLDeclarationAxiom))
+                changes.add(new RemoveAxiom(ontology, axiom));
+        }
+        for (OWLAxiom axiom : axioms) {
+            if (!storedAxioms.contains(axiom))
+                changes.add(new AddAxiom(ontology, axiom));
+        }
+        return changes;
     }
 
     public List<Patient> getPatients() {
         List<Patient> patients = new ArrayList<>();
-        Patient patient;
-        for (OWLIndividual patientInd : EntitySearcher.getIndividuals(properties.patientClass, ontology)) {
-            patient = getPatient(patientInd);
-            patient = getInferredPatient(patient);
-            patients.add(patient);
-        }
+        for (OWLIndividual patientInd : EntitySearcher.getIndividuals(properties.patientClass, ontology))
+            patients.add(getPatient(patientInd));
 //        patients.addAll(generatePatientsFromRules());
+        inferPatients(patients);
+        return patients;
+    }
+
+    /**
+     * @return patients with only the identifier and the name loaded, which are loaded
+     * completely by {@link #loadPatients(Collection)}
+     */
+    public List<Patient> getPatientStubs() {
+        List<Patient> patients = new ArrayList<>();
+        for (OWLIndividual patientInd : EntitySearcher.getIndividuals(properties.patientClass, ontology))
+            patients.add(getPatientStub(patientInd));
+        return patients;
+    }
+
+    /**
+     * Loads the details and inferred properties of patients which are not loaded yet.
+     */
+    public Collection<Patient> loadPatients(Collection<Patient> patients) {
+        List<Patient> loadedPatients = new ArrayList<>();
+        for (Patient patient : patients) {
+            if (!patient.isLoaded()) {
+                loadPatientDetails(factory.getOWLNamedIndividual(patient.getID(), prefixManager), patient);
+                loadedPatients.add(patient);
+            }
+        }
+        if (!loadedPatients.isEmpty())
+            inferPatients(loadedPatients);
+        return patients;
+    }
+
+    /**
+     * Sets inferred properties of the patients. Pending ontology changes are passed to
+     * the reasoner once, before the properties of all patients are read, so this should
+     * be called once after a batch of changes rather than for every patient.
+     * <p>
+     * Unless the inference mode is {@link InferenceMode#REASONER}, rules are evaluated
+     * natively as long as all of them can be compiled. Patients which are not loaded are
+     * skipped, they are inferred when loaded.
+     */
+    public Collection<Patient> inferPatients(Collection<Patient> patients) {
+        if (patients.stream().anyMatch(patient -> !patient.isLoaded())) {
+            inferLoadedPatients(patients);
+            return patients;
+        }
+        if (inferenceMode != InferenceMode.REASONER && ruleEvaluator.isComplete()) {
+            patients.forEach(ruleEvaluator::infer);
+            if (inferenceMode == InferenceMode.NATIVE)
+                return patients;
+            getReasoner().flush();
+            patients.forEach(this::crossCheckInferredProperties);
+            return patients;
+        }
+        getReasoner().flush();
+        patients.forEach(this::setInferredProperties);
         return patients;
     }
 
     public void addEntity(Entity entity) {
+        awaitReasoner();
         OWLNamedIndividual entityInd = factory.getOWLNamedIndividual(entity.getID(), prefixManager);
         setEntityIndClasses(entityInd, entity.getClasses());
         setEntityIndProperty(entityInd, factory.getRDFSLabel(), entity.getLanguageLabelMap());
@@ -227,6 +483,7 @@ public class OntologyWrapper {
     }
 
     public void deleteEntity(Entity entity) {
+        awaitReasoner();
         OWLNamedIndividual entityID = factory.getOWLNamedIndividual(entity.getID(), prefixManager);
         entityID.accept(remover);
         ontologyManager.applyChanges(remover.getChanges());
@@ -243,34 +500,86 @@ public class OntologyWrapper {
             deleteEntity(patient);
     }
 
+    /**
+     * Saves the ontology, replacing the file atomically.
+     */
     public void saveOntologyToFile(File file) throws OWLOntologyStorageException {
-        ontologyManager.saveOntology(ontology, ontologyFormat, IRI.create(file));
+        try {
+            AtomicFiles.write(file, output -> ontologyManager.saveOntology(ontology, ontologyFormat, output));
+        } catch (IOException e) {
+            throw new OWLOntologyStorageException(e);
+        }
+    }
+
+    /**
+     * @return copy of the ontology sharing its axioms, which can be saved by another thread
+     * while this ontology is changed
+     */
+    OWLOntology copyOntology() throws OWLOntologyCreationException {
+        return OWLManager.createOWLOntologyManager().copyOntology(ontology, OntologyCopy.SHALLOW);
+    }
+
+    OWLDocumentFormat getOntologyFormat() {
+        return ontologyFormat;
     }
 
     public boolean containsID(String id) {
         return ontology.containsEntityInSignature(IRI.create(prefixManager.getDefaultPrefix(), id));
     }
 
+    /**
+     * @return all rules ordered by their names
+     */
     public Collection<Rule> getRules() {
-        return rules;
+        return rulesManager.getRuleRegistry().getRules();
+    }
+
+    public RuleRegistry getRuleRegistry() {
+        return rulesManager.getRuleRegistry();
+    }
+
+    public RuleIndex getRuleIndex() {
+        return rulesManager.getRuleIndex();
     }
 
     public void addRule(Rule rule) throws CreateRuleException {
         rulesManager.addRule(rule);
+        ruleEvaluator.addRule(rule);
     }
 
     public void deleteRule(Rule rule) {
         rulesManager.deleteRule(rule);
+        ruleEvaluator.removeRule(rule);
     }
 
     public void deleteRules(Collection<Rule> rules) {
         rulesManager.deleteRules(rules);
+        ruleEvaluator.removeRules(rules);
+    }
+
+    /**
+     * @return deleted rules, the rules with names starting with the prefix
+     */
+    public Collection<Rule> deleteRulesByPrefix(String prefix) {
+        Collection<Rule> rules = rulesManager.deleteRulesByPrefix(prefix);
+        ruleEvaluator.removeRules(rules);
+        return rules;
+    }
+
+    /**
+     * Deletes and adds rules in one batch. If any of the added rules cannot be created,
+     * the rule set is left unchanged.
+     */
+    public void replaceRules(Collection<Rule> deletedRules, Collection<Rule> addedRules) throws CreateRuleException {
+        rulesManager.replaceRules(deletedRules, addedRules);
+        ruleEvaluator.removeRules(deletedRules);
+        ruleEvaluator.addRules(addedRules);
     }
 
     @SuppressWarnings({"rawtypes", "unchecked"})
     public Collection<Patient> generatePatientsFromRules() {
         Collection<Patient> patients = new ArrayList<>();
-        for (Rule rule : rules) {
+        for (Rule rule : getRules()) {
             Patient patient = generatePatientFromRule(rule);
             if (patient != null)
                 patients.add(patient);
@@ -287,8 +596,7 @@ public class OntologyWrapper {
         causes.values().forEach(Entity::setLanguage);
     }
 
-    private Patient getInferredPatient(Patient patient) {
-        reasoner.flush();
+    private void setInferredProperties(Patient patient) {
         OWLNamedIndividual patientInd = factory.getOWLNamedIndividual(patient.getID(), prefixManager);
 
         setPatientInferredObjectProperty(patientInd, properties.symptomProperty, symptoms, patient::getSymptoms, patient::setInferredSymptoms);
@@ -296,8 +604,35 @@ public class OntologyWrapper {
         setPatientInferredObjectProperty(patientInd, properties.testProperty, tests, patient::getTests, patient::setInferredTests);
         setPatientInferredObjectProperty(patientInd, properties.treatmentProperty, treatments, patient::getTreatments, patient::setInferredTreatments);
         setPatientInferredObjectProperty(patientInd, properties.causeProperty, causes, patient::getCauses, patient::setInferredCauses);
+    }
 
-        return patient;
+    private void inferLoadedPatients(Collection<Patient> patients) {
+        List<Patient> loadedPatients = new ArrayList<>();
+        for (Patient patient : patients) {
+            if (patient.isLoaded())
+                loadedPatients.add(patient);
+        }
+        if (!loadedPatients.isEmpty())
+            inferPatients(loadedPatients);
+    }
+
+    private void crossCheckInferredProperties(Patient patient) {
+        List<Set<Entity>> nativeProperties = getInferredProperties(patient);
+        setInferredProperties(patient);
+        List<Set<Entity>> reasonerProperties = getInferredProperties(patient);
+        if (!nativeProperties.equals(reasonerProperties)) {
+            LOG.warn("Native rule evaluation of {} differs from the reasoner: {} instead of {}.",
+                    patient.getID(), nativeProperties, reasonerProperties);
+        }
+    }
+
+    private List<Set<Entity>> getInferredProperties(Patient patient) {
+        return Arrays.asList(
+                new HashSet<>(patient.getInferredSymptoms()),
+                new HashSet<>(patient.getInferredDiseases()),
+                new HashSet<>(patient.getInferredTests()),
+                new HashSet<>(patient.getInferredTreatments()),
+                new HashSet<>(patient.getInferredCauses()));
     }
 
     private Patient generatePatientFromRule(Rule rule) {
@@ -499,7 +834,7 @@ public class OntologyWrapper {
                                                   Map<String, Entity> entities, Supplier<Collection<Entity>> getter,
                                                   Consumer<Collection<Entity>> setter) {
         Set<Entity> inferredEntities = new HashSet<>();
-        for (OWLNamedIndividual entityInd : reasoner.getObjectPropertyValues(patientInd, property)
+        for (OWLNamedIndividual entityInd : getReasoner().getObjectPropertyValues(patientInd, property)
                 .getFlattened()) {
             inferredEntities.add(entities.get(renderer.render(entityInd)));
         }
@@ -507,23 +842,22 @@ public class OntologyWrapper {
         setter.accept(inferredEntities);
     }
 
-    private void setPatientIndStringProperty(OWLIndividual patientInd, OWLDataProperty property, String value) {
-        if (isNotBlank(value)) {
-            ontologyManager.addAxiom(ontology,
-                    factory.getOWLDataPropertyAssertionAxiom(property, patientInd, value));
-        }
+    private void addPatientIndStringProperty(Set<OWLAxiom> axioms, OWLIndividual patientInd, OWLDataProperty property,
+                                             String value) {
+        if (isNotBlank(value))
+            axioms.add(factory.getOWLDataPropertyAssertionAxiom(property, patientInd, value));
     }
 
-    private void setPatientIndIntegerProperty(OWLIndividual patientInd, OWLDataProperty property, Integer value) {
-        if (value != null && value > 0) {
-            ontologyManager.addAxiom(ontology,
-                    factory.getOWLDataPropertyAssertionAxiom(property, patientInd, value));
-        }
+    private void addPatientIndIntegerProperty(Set<OWLAxiom> axioms, OWLIndividual patientInd, OWLDataProperty property,
+                                              Integer value) {
+        if (value != null && value > 0)
+            axioms.add(factory.getOWLDataPropertyAssertionAxiom(property, patientInd, value));
     }
 
-    private void setPatientIndObjectProperty(OWLIndividual patientInd, OWLObjectProperty property, Collection<Entity> entities) {
+    private void addPatientIndObjectProperty(Set<OWLAxiom> axioms, OWLIndividual patientInd, OWLObjectProperty property,
+                                             Collection<Entity> entities) {
         for (Entity entity : entities) {
-            ontologyManager.addAxiom(ontology, factory.getOWLObjectPropertyAssertionAxiom(property, patientInd,
+            axioms.add(factory.getOWLObjectPropertyAssertionAxiom(property, patientInd,
                     factory.getOWLNamedIndividual(entity.getID(), prefixManager)));
         }
     }
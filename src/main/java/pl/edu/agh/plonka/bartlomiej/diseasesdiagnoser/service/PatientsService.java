@@ -3,29 +3,65 @@ package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.service;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import org.semanticweb.owlapi.model.OWLOntologyCreationException;
-import org.semanticweb.owlapi.model.OWLOntologyStorageException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.exception.CreateRuleException;
 import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.exception.RuleAlreadyExistsException;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Entity;
 import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Patient;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.Category;
 import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.Rule;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+import static java.util.Arrays.asList;
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
 import static java.util.stream.Collectors.toSet;
 import static pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.utils.Constants.GENERATED_RULE_PREFIX;
 
 public class PatientsService {
 
+    private static final int JOURNAL_COMPACTION_SIZE = 1000;
+
     private final Logger LOG = LoggerFactory.getLogger(getClass());
+    private final Executor saveExecutor = new ThreadPoolExecutor(0, 1, 1, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), PatientsService::createSaveThread);
 
     private OntologyWrapper ontology;
+    private KnowledgeBaseJournal journal;
+    private boolean compactingJournal;
+    /**
+     * Set if some journaled changes could not be replayed. The journal is then not compacted
+     * automatically, so that the changes are not lost until the knowledge base is saved.
+     */
+    private boolean keepingJournal;
     private ObservableList<Patient> patients = FXCollections.observableArrayList();
     private ObservableList<Rule> rules = FXCollections.observableArrayList();
+    private ObservableList<Rule> rulesView = FXCollections.unmodifiableObservableList(rules);
+    private Set<Patient> changedPatients = new HashSet<>();
+    private Set<Patient> deletedPatients = new HashSet<>();
+    /**
+     * Set if the rules have to be learned from scratch, because the knowledge base was
+     * created or opened, or the generated rules were changed outside of learning.
+     */
+    private boolean learningInvalidated = true;
+    private InferenceMode inferenceMode = InferenceMode.REASONER;
 
     public PatientsService(String url) throws OWLOntologyCreationException {
         createKnowledgeBase(url);
@@ -37,105 +73,515 @@ public class PatientsService {
 
     public void createKnowledgeBase(String url) throws OWLOntologyCreationException {
         ontology = new OntologyWrapper(url);
+        ontology.setInferenceMode(inferenceMode);
+        closeJournal();
+        journal = new KnowledgeBaseJournal();
+        keepingJournal = false;
         patients.clear();
         rules.clear();
+        invalidateLearning();
     }
 
+    /**
+     * Opens the knowledge base from its snapshot if the snapshot is up to date, otherwise
+     * from the OWL file alone, and then writes a snapshot for the next start. Changes
+     * journaled since the file was saved are applied and saved to the file in the
+     * background.
+     */
     public void createKnowledgeBase(File file) throws OWLOntologyCreationException {
-        ontology = new OntologyWrapper(file);
-        patients.setAll(ontology.getPatients());
+        KnowledgeBaseSnapshot snapshot = KnowledgeBaseSnapshot.read(file);
+        ontology = new OntologyWrapper(file, snapshot);
+        ontology.setInferenceMode(inferenceMode);
+        patients.setAll(snapshot != null ? snapshot.getPatients() : ontology.getPatientStubs());
         rules.setAll(ontology.getRules());
+        invalidateLearning();
+        if (snapshot == null)
+            writeSnapshot(file);
+        closeJournal();
+        journal = openJournal(file, snapshot);
+        replayJournal();
+    }
+
+    /**
+     * Captures the knowledge base to be saved to the file by the returned task, which is
+     * not started. Must be called on the application thread.
+     */
+    public SaveKnowledgeBaseTask createSaveTask(File file) throws OWLOntologyCreationException, IOException {
+        keepingJournal = false;
+        return new SaveKnowledgeBaseTask(file, ontology.copyOntology(), ontology.getOntologyFormat(),
+                KnowledgeBaseSnapshot.encode(ontology, patients), journal);
+    }
+
+    /**
+     * Runs the task after the saves started before it, so that the files are replaced in the
+     * order the knowledge base was captured.
+     */
+    public void startSave(SaveKnowledgeBaseTask task) {
+        saveExecutor.execute(task);
+    }
+
+    /**
+     * Save threads are not daemons, so that a save started before the application exits
+     * is finished.
+     */
+    private static Thread createSaveThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "knowledge-base-save");
+        thread.setDaemon(false);
+        return thread;
+    }
+
+    /**
+     * Opens the journal with the checksum of the file stored in the snapshot, if there is one.
+     */
+    private KnowledgeBaseJournal openJournal(File file, KnowledgeBaseSnapshot snapshot) {
+        try {
+            return snapshot != null ? KnowledgeBaseJournal.open(file, snapshot.getChecksum())
+                    : KnowledgeBaseJournal.open(file);
+        } catch (IOException e) {
+            LOG.warn("Failed to open the journal of " + file + ", changes are kept until the knowledge base is saved.", e);
+            return new KnowledgeBaseJournal();
+        }
+    }
+
+    private void closeJournal() {
+        if (journal != null)
+            journal.close();
+    }
+
+    private void replayJournal() {
+        JournalReplay replay = new JournalReplay();
+        int count = journal.replay(ontology, replay);
+        keepingJournal = count > 0 && !replay.apply();
+        if (keepingJournal) {
+            LOG.warn("Failed to replay some journaled changes of {}, the journal is kept until the knowledge base is saved.",
+                    journal.getOntologyFile());
+        } else if (count > 0) {
+            LOG.info("Replayed {} journaled changes of {}.", count, journal.getOntologyFile());
+            compactJournal();
+        }
+    }
+
+    private void compactJournalIfFull() {
+        if (journal.size() >= JOURNAL_COMPACTION_SIZE && !keepingJournal)
+            compactJournal();
+    }
+
+    /**
+     * Saves the knowledge base to the file of its journal in the background, which leaves
+     * only the changes made while saving in the journal.
+     */
+    private void compactJournal() {
+        File file = journal.getOntologyFile();
+        if (file == null || compactingJournal)
+            return;
+        try {
+            SaveKnowledgeBaseTask task = createSaveTask(file);
+            compactingJournal = true;
+            task.setOnSucceeded(event -> compactingJournal = false);
+            task.setOnFailed(event -> {
+                compactingJournal = false;
+                LOG.warn("Failed to compact the journal of " + file + ".", task.getException());
+            });
+            startSave(task);
+        } catch (OWLOntologyCreationException | IOException e) {
+            LOG.warn("Failed to compact the journal of " + file + ".", e);
+        }
     }
 
-    public void saveKnowledgeBase(File file) throws OWLOntologyStorageException {
-        ontology.saveOntologyToFile(file);
+    private void writeSnapshot(File file) {
+        try {
+            KnowledgeBaseSnapshot.write(file, ontology, patients);
+        } catch (IOException e) {
+            LOG.warn("Failed to write knowledge base snapshot of " + file + ".", e);
+        }
     }
 
     public ObservableList<Patient> getPatients() {
         return patients;
     }
 
+    /**
+     * Loads the details of a patient, which is loaded lazily with only the name shown in the
+     * patients table.
+     */
+    public Patient loadPatient(Patient patient) {
+        ontology.loadPatients(Collections.singleton(patient));
+        return patient;
+    }
+
+    public void loadPatients() {
+        ontology.loadPatients(patients);
+    }
+
     public void addPatient(Patient patient) {
         ontology.addPatient(patient);
         patients.add(patient);
+        changedPatients.add(patient);
+        journal.putPatient(patient);
+        compactJournalIfFull();
     }
 
     public void addPatients(Collection<Patient> patients) {
-        patients.forEach(p -> {
-            ontology.addPatient(p);
-            this.patients.add(p);
-        });
-
+        ontology.addPatients(patients);
+        this.patients.addAll(patients);
+        changedPatients.addAll(patients);
+        patients.forEach(journal::putPatient);
+        compactJournalIfFull();
     }
 
     public void deletePatient(Patient patient) {
         patients.remove(patient);
+        patientDeleted(patient);
         ontology.deleteEntity(patient);
+        journal.deletePatient(patient);
+        compactJournalIfFull();
     }
 
     public void deletePatients(Collection<Patient> patients) {
         this.patients.removeAll(patients);
+        patients.forEach(this::patientDeleted);
         ontology.deletePatients(patients);
+        patients.forEach(journal::deletePatient);
+        compactJournalIfFull();
     }
 
+    /**
+     * Stores the edited patients. Patients which are not loaded have no changes, so they
+     * are not journaled.
+     */
     public Collection<Patient> updatePatients(Collection<Patient> patients) {
-        patients.forEach(p -> ontology.updatePatient(p));
-        return patients;
+        Collection<Patient> updatedPatients = ontology.updatePatients(patients);
+        patients.stream().filter(Patient::isLoaded).forEach(patient -> {
+            changedPatients.add(patient);
+            journal.putPatient(patient);
+        });
+        compactJournalIfFull();
+        return updatedPatients;
+    }
+
+    /**
+     * Adds the entity, like a new symptom, to the ontology or updates the stored one.
+     */
+    public void addEntity(Entity entity) {
+        ontology.addEntity(entity);
+        journal.putEntity(entity);
+        compactJournalIfFull();
+    }
+
+    public void deleteEntity(Entity entity) {
+        ontology.deleteEntity(entity);
+        journal.deleteEntity(entity);
+        compactJournalIfFull();
     }
 
+    /**
+     * @return rules of the rule registry of the knowledge base, ordered by their names; the
+     * list is updated on every change of the rules and cannot be modified
+     */
     public ObservableList<Rule> getRules() {
-        return rules;
+        return rulesView;
     }
 
     public void addRule(Rule rule) throws RuleAlreadyExistsException, CreateRuleException {
-        if (rules.contains(rule))
-            throw new RuleAlreadyExistsException(rule);
-        ontology.addRule(rule);
-        rules.add(rule);
-        updatePatients(patients);
+        beginRuleTransaction().add(rule).commit();
     }
 
     public void addRules(Collection<Rule> rules) throws RuleAlreadyExistsException, CreateRuleException {
-        for (Rule rule : rules)
-            addRule(rule);
+        beginRuleTransaction().addAll(rules).commit();
     }
 
     public void deleteRule(Rule rule) {
-        this.ontology.deleteRule(rule);
-        this.rules.remove(rule);
-        updatePatients(patients);
+        invalidateLearning(Collections.singleton(rule));
+        ontology.deleteRule(rule);
+        rules.setAll(ontology.getRules());
+        ontology.inferPatients(patients);
+        journal.deleteRule(rule);
+        compactJournalIfFull();
     }
 
     public void deleteRules(Collection<Rule> rules) {
-        this.ontology.deleteRules(rules);
-        this.rules.removeAll(rules);
-        updatePatients(patients);
+        List<Rule> deletedRules = new ArrayList<>(rules);
+        invalidateLearning(deletedRules);
+        ontology.deleteRules(deletedRules);
+        this.rules.setAll(ontology.getRules());
+        ontology.inferPatients(patients);
+        deletedRules.forEach(journal::deleteRule);
+        compactJournalIfFull();
+    }
+
+    /**
+     * Deletes the rules with names starting with the prefix, like all generated rules of
+     * one predicate.
+     */
+    public Collection<Rule> deleteRulesByPrefix(String prefix) {
+        Collection<Rule> deletedRules = ontology.deleteRulesByPrefix(prefix);
+        if (!deletedRules.isEmpty()) {
+            invalidateLearning(deletedRules);
+            rules.setAll(ontology.getRules());
+            ontology.inferPatients(patients);
+            deletedRules.forEach(journal::deleteRule);
+            compactJournalIfFull();
+        }
+        return deletedRules;
+    }
+
+    /**
+     * Starts a change of the rule set, which is applied with a single inference of the
+     * patients when the transaction is committed.
+     */
+    public RuleTransaction beginRuleTransaction() {
+        return new RuleTransaction(this);
+    }
+
+    void commitRules(Collection<Rule> deletedRules, Collection<Rule> addedRules)
+            throws RuleAlreadyExistsException, CreateRuleException {
+        RuleRegistry ruleRegistry = ontology.getRuleRegistry();
+        for (Rule rule : addedRules) {
+            if (ruleRegistry.contains(rule.getName()) && !deletedRules.contains(rule))
+                throw new RuleAlreadyExistsException(rule);
+        }
+        ontology.replaceRules(deletedRules, addedRules);
+        invalidateLearning(deletedRules);
+        invalidateLearning(addedRules);
+        rules.setAll(ontology.getRules());
+        ontology.inferPatients(patients);
+        deletedRules.forEach(journal::deleteRule);
+        addedRules.forEach(journal::putRule);
+        compactJournalIfFull();
     }
 
     public void editPatient(Patient patient) {
         ontology.updatePatient(patient);
+        changedPatients.add(patient);
+        journal.putPatient(patient);
+        compactJournalIfFull();
     }
 
     public OntologyWrapper getOntology() {
         return ontology;
     }
 
+    public InferenceMode getInferenceMode() {
+        return inferenceMode;
+    }
+
+    /**
+     * Sets the inference mode of this and subsequently created knowledge bases and
+     * infers the patients again.
+     */
+    public void setInferenceMode(InferenceMode inferenceMode) {
+        this.inferenceMode = inferenceMode;
+        ontology.setInferenceMode(inferenceMode);
+        ontology.inferPatients(patients);
+    }
+
     public void changeLanguage() {
         ontology.changeLanguage();
     }
 
     public void learnNewRules(MachineLearning machineLearning) throws Throwable {
+        loadPatients();
+        machineLearning.setOntology(ontology);
         Collection<Patient> patients = getPatients();
         Collection<Rule> newGeneratedRules = machineLearning.sequentialCovering(new HashSet<>(patients));
-        Set<Rule> oldGeneratedRules = getRules()
-                .stream()
-                .filter(this::isGeneratedRule)
-                .collect(toSet());
-        deleteRules(oldGeneratedRules);
-        addRules(newGeneratedRules);
+        Collection<Rule> oldGeneratedRules = getGeneratedRules();
+        beginRuleTransaction().deleteAll(oldGeneratedRules).addAll(newGeneratedRules).commit();
+        learningFinished();
+    }
+
+    /**
+     * Relearns only the categories invalidated by patients added, edited or deleted since
+     * the last learning. Only generated rules which actually changed are replaced in the
+     * ontology. Falls back to {@link #learnNewRules(MachineLearning)} if the machine learning
+     * has no complete previous run of this knowledge base or the generated rules were
+     * changed outside of learning.
+     */
+    public void relearnRules(MachineLearning machineLearning) throws Throwable {
+        loadPatients();
+        if (learningInvalidated || machineLearning.getOntology() != ontology) {
+            learnNewRules(machineLearning);
+            return;
+        }
+        Collection<Category> categories = machineLearning.findInvalidatedCategories(changedPatients, deletedPatients);
+        if (categories == null) {
+            learnNewRules(machineLearning);
+            return;
+        }
+        if (!categories.isEmpty()) {
+            Collection<Rule> newGeneratedRules = machineLearning.sequentialCovering(new HashSet<>(getPatients()), categories);
+            Collection<Rule> oldGeneratedRules = getGeneratedRules();
+            Map<String, Rule> newGeneratedRulesByName = newGeneratedRules
+                    .stream()
+                    .collect(toMap(Rule::getName, identity(), (rule, duplicate) -> rule));
+            Set<Rule> deletedRules = oldGeneratedRules
+                    .stream()
+                    .filter(rule -> !isSameRule(rule, newGeneratedRulesByName.get(rule.getName())))
+                    .collect(toSet());
+            RuleRegistry ruleRegistry = ontology.getRuleRegistry();
+            Set<Rule> addedRules = newGeneratedRules
+                    .stream()
+                    .filter(rule -> !isSameRule(rule, ruleRegistry.getRule(rule.getName())))
+                    .collect(toSet());
+            LOG.info("Relearned {} categories: {} rules deleted, {} rules added.", categories.size(), deletedRules.size(), addedRules.size());
+            beginRuleTransaction().deleteAll(deletedRules).addAll(addedRules).commit();
+        }
+        learningFinished();
+    }
+
+    private void learningFinished() {
+        changedPatients.clear();
+        deletedPatients.clear();
+        learningInvalidated = false;
+    }
+
+    private void invalidateLearning() {
+        changedPatients.clear();
+        deletedPatients.clear();
+        learningInvalidated = true;
+    }
+
+    /**
+     * Learning does not depend on other rules, only changes of the generated rules made
+     * outside of learning invalidate it.
+     */
+    private void invalidateLearning(Collection<Rule> changedRules) {
+        if (changedRules.stream().anyMatch(rule -> rule.getName().startsWith(GENERATED_RULE_PREFIX)))
+            learningInvalidated = true;
+    }
+
+    /**
+     * The categories of a patient which is not loaded are not known, so deleting it
+     * invalidates all learned rules.
+     */
+    private void patientDeleted(Patient patient) {
+        changedPatients.remove(patient);
+        if (patient.isLoaded())
+            deletedPatients.add(patient);
+        else
+            learningInvalidated = true;
+    }
+
+    private boolean isSameRule(Rule rule, Rule otherRule) {
+        return rule.equals(otherRule)
+                && new HashSet<>(rule.getBodyAtoms()).equals(new HashSet<>(otherRule.getBodyAtoms()))
+                && new HashSet<>(rule.getHeadAtoms()).equals(new HashSet<>(otherRule.getHeadAtoms()));
+    }
+
+    private Collection<Rule> getGeneratedRules() {
+        return ontology.getRuleRegistry().getRulesByPrefix(GENERATED_RULE_PREFIX);
     }
 
-    private boolean isGeneratedRule(Rule rule) {
-        return rule.getName().trim().startsWith(GENERATED_RULE_PREFIX);
+    /**
+     * Collects the journaled changes of patients and rules, so that they are applied to the
+     * ontology in batches. Entities are applied at once, as the records which follow them
+     * refer to them.
+     */
+    private class JournalReplay implements KnowledgeBaseJournal.Changes {
+
+        private final Map<String, Patient> patientChanges = new LinkedHashMap<>();
+        private final Map<String, Rule> ruleChanges = new LinkedHashMap<>();
+
+        @Override
+        public void putPatient(Patient patient) {
+            patientChanges.put(patient.getID(), patient);
+        }
+
+        @Override
+        public void deletePatient(String id) {
+            patientChanges.put(id, null);
+        }
+
+        @Override
+        public void putEntity(Entity entity, Map<String, Entity> instances) {
+            Entity storedEntity = instances != null ? instances.get(entity.getID()) : null;
+            if (storedEntity != null) {
+                storedEntity.setClasses(entity.getClasses());
+                storedEntity.setLanguageLabelMap(entity.getLanguageLabelMap());
+                storedEntity.setLanguageCommentMap(entity.getLanguageCommentMap());
+                storedEntity.setLanguage();
+                entity = storedEntity;
+            } else if (instances != null) {
+                instances.put(entity.getID(), entity);
+            }
+            ontology.addEntity(entity);
+        }
+
+        @Override
+        public void deleteEntity(String id) {
+            ontology.deleteEntity(new Entity(id));
+            for (Map<String, Entity> instances : asList(ontology.getSymptoms(), ontology.getDiseases(),
+                    ontology.getTests(), ontology.getTreatments(), ontology.getCauses()))
+                instances.remove(id);
+        }
+
+        @Override
+        public void putRule(Rule rule) {
+            ruleChanges.put(rule.getName(), rule);
+        }
+
+        @Override
+        public void deleteRule(String name) {
+            ruleChanges.put(name, null);
+        }
+
+        /**
+         * @return false if some of the changes could not be applied
+         */
+        boolean apply() {
+            Map<String, Patient> storedPatients = patients
+                    .stream()
+                    .collect(toMap(Patient::getID, identity(), (patient, duplicate) -> patient));
+            List<Patient> deletedPatients = new ArrayList<>();
+            List<Patient> addedPatients = new ArrayList<>();
+            List<Patient> updatedPatients = new ArrayList<>();
+            for (Map.Entry<String, Patient> change : patientChanges.entrySet()) {
+                Patient storedPatient = storedPatients.get(change.getKey());
+                Patient patient = change.getValue();
+                if (patient == null) {
+                    if (storedPatient != null)
+                        deletedPatients.add(storedPatient);
+                } else if (storedPatient != null) {
+                    patients.set(patients.indexOf(storedPatient), patient);
+                    updatedPatients.add(patient);
+                } else {
+                    patients.add(patient);
+                    addedPatients.add(patient);
+                }
+            }
+            patients.removeAll(deletedPatients);
+            ontology.deletePatients(deletedPatients);
+            if (!addedPatients.isEmpty())
+                ontology.addPatients(addedPatients);
+            if (!updatedPatients.isEmpty())
+                ontology.updatePatients(updatedPatients);
+            changedPatients.addAll(addedPatients);
+            changedPatients.addAll(updatedPatients);
+            return ruleChanges.isEmpty() || applyRuleChanges();
+        }
+
+        /**
+         * @return false if the rules could not be replaced, they are then left unchanged
+         */
+        private boolean applyRuleChanges() {
+            RuleRegistry ruleRegistry = ontology.getRuleRegistry();
+            List<Rule> deletedRules = ruleChanges.keySet()
+                    .stream()
+                    .map(ruleRegistry::getRule)
+                    .filter(Objects::nonNull)
+                    .collect(toList());
+            List<Rule> addedRules = ruleChanges.values()
+                    .stream()
+                    .filter(Objects::nonNull)
+                    .collect(toList());
+            try {
+                ontology.replaceRules(deletedRules, addedRules);
+            } catch (CreateRuleException e) {
+                LOG.error("Failed to replay journaled rules.", e);
+                return false;
+            }
+            rules.setAll(ontology.getRules());
+            ontology.inferPatients(patients);
+            return true;
+        }
     }
 }
@@ -0,0 +1,149 @@
+package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.service;
+
+import org.apache.commons.lang3.StringUtils;
+import org.semanticweb.owlapi.model.*;
+import org.swrlapi.builtins.arguments.SWRLLiteralBuiltInArgument;
+import org.swrlapi.builtins.arguments.SWRLVariableBuiltInArgument;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Entity;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.AbstractAtom;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.ClassDeclarationAtom;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.TwoArgumentsAtom;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.Variable;
+
+import java.util.List;
+import java.util.Map;
+
+import static pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.utils.Constants.SWRLB_PREFIX;
+
+/**
+ * Converts atoms of SWRL rules to rule atoms by walking the OWL API object model.
+ * Predicates, variables and entities are identified by the short forms of their IRIs,
+ * which are the IDs the entities were loaded with. Atoms which cannot be represented,
+ * or which refer to unknown entities, are converted to null.
+ */
+class RuleAtomParser implements SWRLObjectVisitorEx<AbstractAtom> {
+
+    private final Map<String, Entity> classes;
+    private final Map<String, Entity> entities;
+
+    /**
+     * @param classes  classes by their IDs
+     * @param entities instances of all categories by their IDs
+     */
+    RuleAtomParser(Map<String, Entity> classes, Map<String, Entity> entities) {
+        this.classes = classes;
+        this.entities = entities;
+    }
+
+    AbstractAtom parse(SWRLAtom atom) {
+        return atom.accept(this);
+    }
+
+    @Override
+    public AbstractAtom visit(SWRLClassAtom node) {
+        OWLClassExpression predicate = node.getPredicate();
+        Object argument = parseArgument(node.getArgument());
+        if (predicate.isAnonymous() || argument == null)
+            return null;
+        return new ClassDeclarationAtom<>(classes.get(getID(predicate.asOWLClass().getIRI())), argument);
+    }
+
+    @Override
+    public AbstractAtom visit(SWRLObjectPropertyAtom node) {
+        OWLObjectPropertyExpression predicate = node.getPredicate();
+        if (predicate.isAnonymous())
+            return null;
+        return createAtom(new TwoArgumentsAtom<>(getID(predicate.asOWLObjectProperty().getIRI())),
+                node.getFirstArgument(), node.getSecondArgument());
+    }
+
+    @Override
+    public AbstractAtom visit(SWRLDataPropertyAtom node) {
+        return createAtom(new TwoArgumentsAtom<>(getID(node.getPredicate().asOWLDataProperty().getIRI())),
+                node.getFirstArgument(), node.getSecondArgument());
+    }
+
+    @Override
+    public AbstractAtom visit(SWRLBuiltInAtom node) {
+        List<SWRLDArgument> arguments = node.getArguments();
+        if (arguments.size() != 2)
+            return null;
+        return createAtom(new TwoArgumentsAtom<>(getID(node.getPredicate()), SWRLB_PREFIX),
+                arguments.get(0), arguments.get(1));
+    }
+
+    @Override
+    public AbstractAtom visit(SWRLDataRangeAtom node) {
+        return null;
+    }
+
+    @Override
+    public AbstractAtom visit(SWRLSameIndividualAtom node) {
+        return null;
+    }
+
+    @Override
+    public AbstractAtom visit(SWRLDifferentIndividualsAtom node) {
+        return null;
+    }
+
+    @Override
+    public AbstractAtom visit(SWRLRule node) {
+        return null;
+    }
+
+    @Override
+    public AbstractAtom visit(SWRLVariable node) {
+        return null;
+    }
+
+    @Override
+    public AbstractAtom visit(SWRLIndividualArgument node) {
+        return null;
+    }
+
+    @Override
+    public AbstractAtom visit(SWRLLiteralArgument node) {
+        return null;
+    }
+
+    private AbstractAtom createAtom(TwoArgumentsAtom<Object, Object> atom, SWRLArgument argument1, SWRLArgument argument2) {
+        atom.setArgument1(parseArgument(argument1));
+        atom.setArgument2(parseArgument(argument2));
+        if (atom.getArgument1() == null || atom.getArgument2() == null)
+            return null;
+        return atom;
+    }
+
+    /**
+     * Built-in atoms of the rule engine keep their arguments as built-in arguments, so
+     * both kinds of variables and literals are handled.
+     *
+     * @return variable, entity or integer value of the argument, or null if it cannot be
+     * represented
+     */
+    private Object parseArgument(SWRLArgument argument) {
+        if (argument instanceof SWRLVariable)
+            return new Variable(getID(((SWRLVariable) argument).getIRI()));
+        if (argument instanceof SWRLVariableBuiltInArgument)
+            return new Variable(getID(((SWRLVariableBuiltInArgument) argument).getIRI()));
+        if (argument instanceof SWRLIndividualArgument) {
+            OWLIndividual individual = ((SWRLIndividualArgument) argument).getIndividual();
+            return individual.isNamed() ? entities.get(getID(individual.asOWLNamedIndividual().getIRI())) : null;
+        }
+        if (argument instanceof SWRLLiteralArgument)
+            return parseLiteral(((SWRLLiteralArgument) argument).getLiteral());
+        if (argument instanceof SWRLLiteralBuiltInArgument)
+            return parseLiteral(((SWRLLiteralBuiltInArgument) argument).getLiteral());
+        return null;
+    }
+
+    private static Integer parseLiteral(OWLLiteral literal) {
+        String value = literal.getLiteral();
+        return StringUtils.isNumeric(value) ? Integer.valueOf(value) : null;
+    }
+
+    private static String getID(IRI iri) {
+        return iri.getShortForm();
+    }
+}
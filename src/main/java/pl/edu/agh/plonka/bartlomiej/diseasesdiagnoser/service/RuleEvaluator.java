@@ -0,0 +1,113 @@
+package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.service;
+
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Entity;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Patient;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.PatientRecord;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.Category;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.CompiledRule;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.Rule;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.RuleNetwork;
+
+import java.util.*;
+
+/**
+ * Infers categories of patients by evaluating {@link CompiledRule}s in memory, with a
+ * {@link RuleNetwork} updated as rules are added and removed. Rules which cannot be
+ * compiled are remembered, so that the caller can fall back to the reasoner while any of
+ * them is in the knowledge base.
+ */
+public class RuleEvaluator {
+
+    private final Map<String, CompiledRule> compiledRules = new LinkedHashMap<>();
+    private final Set<String> uncompiledRules = new HashSet<>();
+    private final RuleNetwork network = new RuleNetwork();
+
+    /**
+     * @return true if the rule was compiled
+     */
+    public boolean addRule(Rule rule) {
+        removeRule(rule);
+        CompiledRule compiledRule = CompiledRule.compile(rule);
+        if (compiledRule == null) {
+            uncompiledRules.add(rule.getName());
+            return false;
+        }
+        compiledRules.put(rule.getName(), compiledRule);
+        network.add(compiledRule);
+        return true;
+    }
+
+    public void addRules(Collection<Rule> rules) {
+        rules.forEach(this::addRule);
+    }
+
+    public void removeRule(Rule rule) {
+        CompiledRule compiledRule = compiledRules.remove(rule.getName());
+        if (compiledRule != null)
+            network.remove(compiledRule);
+        uncompiledRules.remove(rule.getName());
+    }
+
+    public void removeRules(Collection<Rule> rules) {
+        rules.forEach(this::removeRule);
+    }
+
+    /**
+     * @return true if all rules were compiled, so the evaluator infers the same categories
+     * as the rules in the ontology
+     */
+    public boolean isComplete() {
+        return uncompiledRules.isEmpty();
+    }
+
+    public Collection<CompiledRule> getCompiledRules() {
+        return compiledRules.values();
+    }
+
+    /**
+     * @return categories of all rules matching the patient
+     */
+    public Set<Category> evaluate(PatientRecord patient) {
+        Set<Category> categories = new HashSet<>();
+        for (CompiledRule rule : network.match(patient))
+            categories.addAll(rule.getCategories());
+        return categories;
+    }
+
+    /**
+     * Sets inferred properties of the patient to the categories of matching rules, which
+     * are not asserted already.
+     */
+    public void infer(Patient patient) {
+        Set<Entity> diseases = new HashSet<>();
+        Set<Entity> tests = new HashSet<>();
+        Set<Entity> treatments = new HashSet<>();
+        Set<Entity> causes = new HashSet<>();
+        for (Category category : evaluate(PatientRecord.of(patient))) {
+            switch (category.getPredicate()) {
+                case HAS_DISEASE:
+                    diseases.add(category.getEntity());
+                    break;
+                case SHOULD_MAKE_TEST:
+                    tests.add(category.getEntity());
+                    break;
+                case SHOULD_BE_TREATED_WITH:
+                    treatments.add(category.getEntity());
+                    break;
+                case CAUSE_OF_DISEASE:
+                    causes.add(category.getEntity());
+                    break;
+            }
+        }
+        diseases.removeAll(patient.getDiseases());
+        tests.removeAll(patient.getTests());
+        treatments.removeAll(patient.getTreatments());
+        causes.removeAll(patient.getCauses());
+
+        patient.setInferredSymptoms(Collections.emptySet());
+        patient.setInferredDiseases(diseases);
+        patient.setInferredTests(tests);
+        patient.setInferredTreatments(treatments);
+        patient.setInferredCauses(causes);
+    }
+}
@@ -0,0 +1,123 @@
+package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.service;
+
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Entity;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.*;
+
+import java.util.*;
+
+import static pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.utils.Constants.SWRLB_PREFIX;
+
+/**
+ * Inverted index from entities and linear properties to the rules referencing them in
+ * their bodies. Rules with atoms which cannot be indexed are candidates for every change.
+ */
+public class RuleIndex {
+
+    private final Map<Entity, Set<Rule>> entityRules = new HashMap<>();
+    private final Map<String, Set<Rule>> propertyRules = new HashMap<>();
+    private final Set<Rule> unindexedRules = new HashSet<>();
+    private final Map<Rule, Set<Entity>> ruleEntities = new HashMap<>();
+    private final Map<Rule, Set<String>> ruleProperties = new HashMap<>();
+
+    void addRule(Rule rule) {
+        removeRule(rule);
+        Set<Entity> entities = new HashSet<>();
+        Set<String> properties = new HashSet<>();
+        Collection<AbstractAtom> atoms = new ArrayList<>(rule.getDeclarationAtoms());
+        atoms.addAll(rule.getBodyAtoms());
+        for (AbstractAtom atom : atoms) {
+            if (atom instanceof ClassDeclarationAtom)
+                continue;
+            if (!(atom instanceof TwoArgumentsAtom)) {
+                unindexedRules.add(rule);
+                continue;
+            }
+            Object argument = ((TwoArgumentsAtom<?, ?>) atom).getArgument2();
+            if (SWRLB_PREFIX.equals(atom.getPrefix()))
+                continue;
+            if (argument instanceof Entity)
+                entities.add((Entity) argument);
+            else if (argument instanceof Variable)
+                properties.add(atom.getPredicate());
+            else
+                unindexedRules.add(rule);
+        }
+        for (Entity entity : entities)
+            entityRules.computeIfAbsent(entity, e -> new HashSet<>()).add(rule);
+        for (String property : properties)
+            propertyRules.computeIfAbsent(property, p -> new HashSet<>()).add(rule);
+        ruleEntities.put(rule, entities);
+        ruleProperties.put(rule, properties);
+    }
+
+    void addRules(Collection<Rule> rules) {
+        rules.forEach(this::addRule);
+    }
+
+    void removeRule(Rule rule) {
+        Set<Entity> entities = ruleEntities.remove(rule);
+        if (entities != null)
+            entities.forEach(entity -> remove(entityRules, entity, rule));
+        Set<String> properties = ruleProperties.remove(rule);
+        if (properties != null)
+            properties.forEach(property -> remove(propertyRules, property, rule));
+        unindexedRules.remove(rule);
+    }
+
+    void removeRules(Collection<Rule> rules) {
+        rules.forEach(this::removeRule);
+    }
+
+    /**
+     * @return rules referencing the entity
+     */
+    public Set<Rule> getRules(Entity entity) {
+        return Collections.unmodifiableSet(entityRules.getOrDefault(entity, Collections.emptySet()));
+    }
+
+    /**
+     * @return rules referencing the linear property, like age
+     */
+    public Set<Rule> getRules(String property) {
+        return Collections.unmodifiableSet(propertyRules.getOrDefault(property, Collections.emptySet()));
+    }
+
+    /**
+     * @return rules referencing all entities, the intersection of their posting lists
+     */
+    public Set<Rule> getRulesReferencingAll(Collection<Entity> entities) {
+        if (entities.isEmpty())
+            return Collections.emptySet();
+        List<Set<Rule>> postingLists = new ArrayList<>();
+        for (Entity entity : entities) {
+            Set<Rule> rules = entityRules.get(entity);
+            if (rules == null)
+                return Collections.emptySet();
+            postingLists.add(rules);
+        }
+        postingLists.sort(Comparator.comparingInt(Set::size));
+        Set<Rule> result = new HashSet<>(postingLists.get(0));
+        for (int i = 1; i < postingLists.size() && !result.isEmpty(); i++)
+            result.retainAll(postingLists.get(i));
+        return result;
+    }
+
+    /**
+     * @return rules which may be fired or stop being fired by a change of the entities or
+     * linear properties of a patient
+     */
+    public Set<Rule> getAffectedRules(Collection<Entity> entities, Collection<String> properties) {
+        Set<Rule> result = new HashSet<>(unindexedRules);
+        for (Entity entity : entities)
+            result.addAll(entityRules.getOrDefault(entity, Collections.emptySet()));
+        for (String property : properties)
+            result.addAll(propertyRules.getOrDefault(property, Collections.emptySet()));
+        return result;
+    }
+
+    private static <K> void remove(Map<K, Set<Rule>> postingLists, K key, Rule rule) {
+        Set<Rule> rules = postingLists.get(key);
+        if (rules != null && rules.remove(rule) && rules.isEmpty())
+            postingLists.remove(key);
+    }
+}
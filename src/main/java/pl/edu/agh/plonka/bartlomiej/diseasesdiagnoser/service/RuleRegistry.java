@@ -0,0 +1,132 @@
+package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.service;
+
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Entity;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.AbstractAtom;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.Category;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.Rule;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.TwoArgumentsAtom;
+
+import java.util.*;
+
+import static pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.utils.Constants.SWRLB_PREFIX;
+
+/**
+ * Rules of a knowledge base by their names, which identify rules in the ontology. Rules are
+ * also indexed by the predicates and categories of their heads. Names are kept sorted, so
+ * rules with a common prefix, like the generated rules of one predicate, are found without
+ * scanning all rules.
+ */
+public class RuleRegistry {
+
+    private final NavigableMap<String, Rule> rules = new TreeMap<>();
+    private final Map<String, Set<Rule>> predicateRules = new HashMap<>();
+    private final Map<Category, Set<Rule>> categoryRules = new HashMap<>();
+
+    /**
+     * Adds the rule, replacing a rule with the same name.
+     */
+    void addRule(Rule rule) {
+        removeRule(rule.getName());
+        rules.put(rule.getName(), rule);
+        for (String predicate : getHeadPredicates(rule))
+            predicateRules.computeIfAbsent(predicate, p -> new HashSet<>()).add(rule);
+        for (Category category : getHeadCategories(rule))
+            categoryRules.computeIfAbsent(category, c -> new HashSet<>()).add(rule);
+    }
+
+    void addRules(Collection<Rule> rules) {
+        rules.forEach(this::addRule);
+    }
+
+    /**
+     * @return removed rule or null if there is no rule with the name
+     */
+    Rule removeRule(String name) {
+        Rule rule = rules.remove(name);
+        if (rule != null) {
+            getHeadPredicates(rule).forEach(predicate -> remove(predicateRules, predicate, rule));
+            getHeadCategories(rule).forEach(category -> remove(categoryRules, category, rule));
+        }
+        return rule;
+    }
+
+    void removeRules(Collection<Rule> rules) {
+        rules.forEach(rule -> removeRule(rule.getName()));
+    }
+
+    public boolean contains(String name) {
+        return rules.containsKey(name);
+    }
+
+    public Rule getRule(String name) {
+        return rules.get(name);
+    }
+
+    /**
+     * @return all rules ordered by their names
+     */
+    public Collection<Rule> getRules() {
+        return Collections.unmodifiableCollection(rules.values());
+    }
+
+    /**
+     * @return rules with names starting with the prefix, ordered by their names
+     */
+    public List<Rule> getRulesByPrefix(String prefix) {
+        List<Rule> result = new ArrayList<>();
+        for (Map.Entry<String, Rule> entry : rules.tailMap(prefix, true).entrySet()) {
+            if (!entry.getKey().startsWith(prefix))
+                break;
+            result.add(entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * @return rules with the predicate in their heads, like hasDisease
+     */
+    public Set<Rule> getRulesByPredicate(String predicate) {
+        return Collections.unmodifiableSet(predicateRules.getOrDefault(predicate, Collections.emptySet()));
+    }
+
+    /**
+     * @return rules concluding the category
+     */
+    public Set<Rule> getRulesByCategory(Category category) {
+        return Collections.unmodifiableSet(categoryRules.getOrDefault(category, Collections.emptySet()));
+    }
+
+    public int size() {
+        return rules.size();
+    }
+
+    private static Set<String> getHeadPredicates(Rule rule) {
+        Set<String> predicates = new HashSet<>();
+        for (AbstractAtom atom : rule.getHeadAtoms()) {
+            if (atom != null && atom.getPredicate() != null)
+                predicates.add(atom.getPredicate());
+        }
+        return predicates;
+    }
+
+    private static Set<Category> getHeadCategories(Rule rule) {
+        Set<Category> categories = new HashSet<>();
+        for (AbstractAtom atom : rule.getHeadAtoms()) {
+            if (!(atom instanceof TwoArgumentsAtom) || SWRLB_PREFIX.equals(atom.getPrefix()))
+                continue;
+            Object argument = ((TwoArgumentsAtom<?, ?>) atom).getArgument2();
+            if (argument instanceof Entity) {
+                Category category = Category.fromProperty(atom.getPredicate(), (Entity) argument);
+                if (category != null)
+                    categories.add(category);
+            }
+        }
+        return categories;
+    }
+
+    private static <K> void remove(Map<K, Set<Rule>> index, K key, Rule rule) {
+        Set<Rule> rules = index.get(key);
+        if (rules != null && rules.remove(rule) && rules.isEmpty())
+            index.remove(key);
+    }
+}
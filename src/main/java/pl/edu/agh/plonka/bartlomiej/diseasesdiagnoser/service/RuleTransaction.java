@@ -0,0 +1,61 @@
+package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.service;
+
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.exception.CreateRuleException;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.exception.RuleAlreadyExistsException;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.Rule;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Change of the rule set of a knowledge base. Deleted and added rules are staged and
+ * applied together on {@link #commit()}, after which the patients are inferred once.
+ * A transaction can be committed only once.
+ */
+public class RuleTransaction {
+
+    private final PatientsService patientsService;
+    private final Set<Rule> deletedRules = new LinkedHashSet<>();
+    private final Set<Rule> addedRules = new LinkedHashSet<>();
+    private boolean committed;
+
+    RuleTransaction(PatientsService patientsService) {
+        this.patientsService = patientsService;
+    }
+
+    public RuleTransaction delete(Rule rule) {
+        deletedRules.add(rule);
+        return this;
+    }
+
+    public RuleTransaction deleteAll(Collection<Rule> rules) {
+        deletedRules.addAll(rules);
+        return this;
+    }
+
+    /**
+     * @throws RuleAlreadyExistsException if a rule with the same name is already staged
+     */
+    public RuleTransaction add(Rule rule) throws RuleAlreadyExistsException {
+        if (!addedRules.add(rule))
+            throw new RuleAlreadyExistsException(rule);
+        return this;
+    }
+
+    public RuleTransaction addAll(Collection<Rule> rules) throws RuleAlreadyExistsException {
+        for (Rule rule : rules)
+            add(rule);
+        return this;
+    }
+
+    /**
+     * Applies the staged changes. If a rule cannot be added, none of the changes is applied.
+     */
+    public void commit() throws RuleAlreadyExistsException, CreateRuleException {
+        if (committed)
+            throw new IllegalStateException("Rule transaction is already committed.");
+        committed = true;
+        patientsService.commitRules(deletedRules, addedRules);
+    }
+}
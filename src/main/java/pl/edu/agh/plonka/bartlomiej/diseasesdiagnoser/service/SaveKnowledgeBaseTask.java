@@ -0,0 +1,105 @@
+package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.service;
+
+import javafx.concurrent.Task;
+import org.semanticweb.owlapi.model.OWLDocumentFormat;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.utils.AtomicFiles;
+
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Saves a knowledge base on a background thread. The ontology and its snapshot are captured
+ * when the task is created on the application thread, so the knowledge base may be changed
+ * while it is being saved. The OWL file is replaced atomically, then the journal is
+ * compacted to the changes made while saving and the snapshot is written.
+ * <p>
+ * Progress is the number of bytes written, relative to the size of the file being replaced.
+ */
+public class SaveKnowledgeBaseTask extends Task<Void> {
+
+    private static final double SNAPSHOT_WORK = 0.05;
+
+    private final Logger LOG = LoggerFactory.getLogger(getClass());
+
+    private final File file;
+    private final OWLOntology ontology;
+    private final OWLDocumentFormat ontologyFormat;
+    private final KnowledgeBaseSnapshot.Writer snapshot;
+    private final KnowledgeBaseJournal journal;
+    private final long journalSequence;
+    private final long expectedSize;
+
+    SaveKnowledgeBaseTask(File file, OWLOntology ontology, OWLDocumentFormat ontologyFormat,
+                          KnowledgeBaseSnapshot.Writer snapshot, KnowledgeBaseJournal journal) {
+        this.file = file;
+        this.ontology = ontology;
+        this.ontologyFormat = ontologyFormat;
+        this.snapshot = snapshot;
+        this.journal = journal;
+        this.journalSequence = journal.getSequence();
+        this.expectedSize = Math.max(file.length(), 1);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    protected Void call() throws Exception {
+        long start = System.nanoTime();
+        updateProgress(0, 1);
+        CRC32 checksum = new CRC32();
+        AtomicFiles.write(file, output -> {
+            ontology.getOWLOntologyManager().saveOntology(ontology, ontologyFormat,
+                    new CheckedOutputStream(new ProgressOutputStream(output), checksum));
+            journal.checkpoint(file, journalSequence, checksum.getValue());
+        });
+        updateProgress(1 - SNAPSHOT_WORK, 1);
+        try {
+            journal.compact(file, journalSequence, checksum.getValue());
+        } catch (IOException e) {
+            LOG.warn("Failed to compact the journal of " + file + ".", e);
+        }
+        try {
+            snapshot.writeTo(file, checksum.getValue());
+        } catch (IOException e) {
+            LOG.warn("Failed to write knowledge base snapshot of " + file + ".", e);
+        }
+        updateProgress(1, 1);
+        LOG.info("Saved knowledge base {} in {} ms.", file, (System.nanoTime() - start) / 1_000_000);
+        return null;
+    }
+
+    private class ProgressOutputStream extends FilterOutputStream {
+
+        private long written;
+
+        ProgressOutputStream(OutputStream output) {
+            super(output);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            progress(1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+            progress(length);
+        }
+
+        private void progress(int length) {
+            written += length;
+            updateProgress(Math.min(written, expectedSize) * (1 - SNAPSHOT_WORK), expectedSize);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.utils;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Replaces files as a whole. Content is written to a temporary file in the directory of the
+ * file, synced to the disk and renamed over the file, so that a failure or a crash while
+ * writing leaves the previous content of the file intact.
+ */
+public class AtomicFiles {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Writes the content to the stream. Closing the stream only flushes it, the file is
+     * synced and closed once the content is written.
+     */
+    @FunctionalInterface
+    public interface ContentWriter<E extends Exception> {
+        void write(OutputStream output) throws IOException, E;
+    }
+
+    private AtomicFiles() {
+    }
+
+    public static <E extends Exception> void write(File file, ContentWriter<E> writer) throws IOException, E {
+        File directory = file.getAbsoluteFile().getParentFile();
+        Path temporaryFile = Files.createTempFile(directory.toPath(), file.getName(), ".tmp");
+        try {
+            try (FileOutputStream fileOutput = new FileOutputStream(temporaryFile.toFile());
+                 OutputStream output = new BufferedOutputStream(fileOutput, BUFFER_SIZE)) {
+                writer.write(new UnclosableOutputStream(output));
+                output.flush();
+                fileOutput.getFD().sync();
+            }
+            move(temporaryFile, file.toPath());
+            syncDirectory(directory);
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, ATOMIC_MOVE, REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Makes the rename durable where directories can be synced; not all platforms allow
+     * opening a directory.
+     */
+    private static void syncDirectory(File directory) {
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // the file is replaced, only the durability of the rename is not guaranteed
+        }
+    }
+
+    private static class UnclosableOutputStream extends FilterOutputStream {
+
+        UnclosableOutputStream(OutputStream output) {
+            super(output);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
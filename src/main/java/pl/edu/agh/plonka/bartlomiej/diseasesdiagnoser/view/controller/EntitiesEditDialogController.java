@@ -163,7 +163,7 @@ public class EntitiesEditDialogController implements ResponseController<Collecti
                 CheckBoxTreeItem<Entity> newTreeItem = new CheckBoxTreeItem<>(newEntity);
                 entities.add(newTreeItem);
                 treeItem.getChildren().add(newTreeItem);
-                patientsService.getOntology().addEntity(newEntity);
+                patientsService.addEntity(newEntity);
                 allIndividuals.put(newEntity.getID(), newEntity);
             }
         } else {
@@ -181,7 +181,7 @@ public class EntitiesEditDialogController implements ResponseController<Collecti
             boolean okClicked = viewManager.showEntityEditDialog(entity, patientsService);
             if (okClicked) {
                 entitiesTree.refresh();
-                patientsService.getOntology().addEntity(entity);
+                patientsService.addEntity(entity);
             }
         } else {
             // Nothing selected.
@@ -197,7 +197,7 @@ public class EntitiesEditDialogController implements ResponseController<Collecti
             Entity entity = treeEntity.getValue();
             treeEntity.getParent().getChildren().remove(treeEntity);
             this.entities.remove(treeEntity);
-            patientsService.getOntology().deleteEntity(entity);
+            patientsService.deleteEntity(entity);
             allIndividuals.remove(entity.getID());
         } else {
             // Nothing selected.
@@ -207,6 +207,7 @@ public class PatientOverviewController {
 
         patientTable.getSelectionModel().selectedItemProperty().addListener((observable, oldValue, newValue) -> {
             if (newValue != null) {
+                patientsService.loadPatient(newValue);
                 bindPatientProperties(newValue);
             } else {
                 unbindPatientProperties();
@@ -289,7 +290,7 @@ public class PatientOverviewController {
                     selectedPatient.getSymptoms(), patientsService);
             if (response.okClicked) {
                 selectedPatient.setSymptoms(response.content);
-                patientsService.getOntology().updatePatient(selectedPatient);
+                patientsService.editPatient(selectedPatient);
             }
         } else {
             viewManager.warningDialog(getTranslation("NO_SELECTION"), getTranslation("NO_PATIENT_SELECTED"),
@@ -304,7 +305,7 @@ public class PatientOverviewController {
             ObservableList<Entity> symptoms = symptomsList.getSelectionModel().getSelectedItems();
             if (!symptoms.isEmpty()) {
                 selectedPatient.getSymptoms().removeAll(symptoms);
-                patientsService.getOntology().updatePatient(selectedPatient);
+                patientsService.editPatient(selectedPatient);
             } else {
                 viewManager.warningDialog(getTranslation("NO_SELECTION"), getTranslation("NO_SYMPTOMS_SELECTED"),
                         getTranslation("SELECT_SYMPTOMS"));
@@ -323,7 +324,7 @@ public class PatientOverviewController {
                     selectedPatient.getDiseases(), patientsService);
             if (response.okClicked) {
                 selectedPatient.setDiseases(response.content);
-                patientsService.getOntology().updatePatient(selectedPatient);
+                patientsService.editPatient(selectedPatient);
             }
         } else {
             viewManager.warningDialog(getTranslation("NO_SELECTION"), getTranslation("NO_PATIENT_SELECTED"),
@@ -338,7 +339,7 @@ public class PatientOverviewController {
             ObservableList<Entity> diseases = diseasesList.getSelectionModel().getSelectedItems();
             if (!diseases.isEmpty()) {
                 selectedPatient.getDiseases().removeAll(diseases);
-                patientsService.getOntology().updatePatient(selectedPatient);
+                patientsService.editPatient(selectedPatient);
             } else {
                 viewManager.warningDialog(getTranslation("NO_SELECTION"), getTranslation("NO_DISEASES_SELECTED"),
                         getTranslation("SELECT_DISEASES"));
@@ -357,7 +358,7 @@ public class PatientOverviewController {
                     selectedPatient.getTests(), patientsService);
             if (response.okClicked) {
                 selectedPatient.setTests(response.content);
-                patientsService.getOntology().updatePatient(selectedPatient);
+                patientsService.editPatient(selectedPatient);
             }
         } else {
             viewManager.warningDialog(getTranslation("NO_SELECTION"), getTranslation("NO_PATIENT_SELECTED"),
@@ -372,7 +373,7 @@ public class PatientOverviewController {
             ObservableList<Entity> tests = testsList.getSelectionModel().getSelectedItems();
             if (!tests.isEmpty()) {
                 selectedPatient.getTests().removeAll(tests);
-                patientsService.getOntology().updatePatient(selectedPatient);
+                patientsService.editPatient(selectedPatient);
             } else {
                 viewManager.warningDialog(getTranslation("NO_SELECTION"), getTranslation("NO_TESTS_SELECTED"),
                         getTranslation("SELECT_TESTS"));
@@ -391,7 +392,7 @@ public class PatientOverviewController {
                     selectedPatient.getTreatments(), patientsService);
             if (response.okClicked) {
                 selectedPatient.setTreatments(response.content);
-                patientsService.getOntology().updatePatient(selectedPatient);
+                patientsService.editPatient(selectedPatient);
             }
         } else {
             viewManager.warningDialog(getTranslation("NO_SELECTION"), getTranslation("NO_PATIENT_SELECTED"),
@@ -406,7 +407,7 @@ public class PatientOverviewController {
             ObservableList<Entity> treatments = treatmentsList.getSelectionModel().getSelectedItems();
             if (!treatments.isEmpty()) {
                 selectedPatient.getTreatments().removeAll(treatments);
-                patientsService.getOntology().updatePatient(selectedPatient);
+                patientsService.editPatient(selectedPatient);
             } else {
                 viewManager.warningDialog(getTranslation("NO_SELECTION"), getTranslation("NO_TREATMENTS_SELECTED"),
                         getTranslation("SELECT_TREATMENTS"));
@@ -425,7 +426,7 @@ public class PatientOverviewController {
                     selectedPatient.getCauses(), patientsService);
             if (response.okClicked) {
                 selectedPatient.setCauses(response.content);
-                patientsService.getOntology().updatePatient(selectedPatient);
+                patientsService.editPatient(selectedPatient);
             }
         } else {
             viewManager.warningDialog(getTranslation("NO_SELECTION"), getTranslation("NO_PATIENT_SELECTED"),
@@ -440,7 +441,7 @@ public class PatientOverviewController {
             ObservableList<Entity> causes = causesList.getSelectionModel().getSelectedItems();
             if (!causes.isEmpty()) {
                 selectedPatient.getCauses().removeAll(causes);
-                patientsService.getOntology().updatePatient(selectedPatient);
+                patientsService.editPatient(selectedPatient);
             } else {
                 viewManager.warningDialog(getTranslation("NO_SELECTION"), getTranslation("NO_CAUSES_SELECTED"),
                         getTranslation("SELECT_CAUSES"));
@@ -459,7 +460,7 @@ public class PatientOverviewController {
                     selectedPatient.getNegativeTests(), patientsService);
             if (response.okClicked) {
                 selectedPatient.setNegativeTests(response.content);
-                patientsService.getOntology().updatePatient(selectedPatient);
+                patientsService.editPatient(selectedPatient);
             }
         } else {
             viewManager.warningDialog(getTranslation("NO_SELECTION"), getTranslation("NO_PATIENT_SELECTED"),
@@ -474,7 +475,7 @@ public class PatientOverviewController {
             ObservableList<Entity> negativeTests = negativeTestsList.getSelectionModel().getSelectedItems();
             if (!negativeTests.isEmpty()) {
                 selectedPatient.getNegativeTests().removeAll(negativeTests);
-                patientsService.getOntology().updatePatient(selectedPatient);
+                patientsService.editPatient(selectedPatient);
             } else {
                 viewManager.warningDialog(getTranslation("NO_SELECTION"), getTranslation("NO_NEGATIVE_TESTS_SELECTED"),
                         getTranslation("SELECT_NEGATIVE_TESTS"));
@@ -493,7 +494,7 @@ public class PatientOverviewController {
                     selectedPatient.getPreviousDiseases(), patientsService);
             if (response.okClicked) {
                 selectedPatient.setPreviousDiseases(response.content);
-                patientsService.getOntology().updatePatient(selectedPatient);
+                patientsService.editPatient(selectedPatient);
             }
         } else {
             viewManager.warningDialog(getTranslation("NO_SELECTION"), getTranslation("NO_PATIENT_SELECTED"),
@@ -508,7 +509,7 @@ public class PatientOverviewController {
             ObservableList<Entity> previousAndCurrentDiseases = previousAndCurrentDiseasesList.getSelectionModel().getSelectedItems();
             if (!previousAndCurrentDiseases.isEmpty()) {
                 selectedPatient.getPreviousDiseases().removeAll(previousAndCurrentDiseases);
-                patientsService.getOntology().updatePatient(selectedPatient);
+                patientsService.editPatient(selectedPatient);
             } else {
                 viewManager.warningDialog(getTranslation("NO_SELECTION"), getTranslation("NO_PREVIOUS_DISEASES_SELECTED"),
                         getTranslation("SELECT_PREVIOUS_DISEASES"));
@@ -3,10 +3,10 @@ package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.view.controller;
 import javafx.fxml.FXML;
 import javafx.scene.control.Menu;
 import javafx.scene.control.MenuItem;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.RadioMenuItem;
 import javafx.scene.control.ToggleGroup;
 import org.semanticweb.owlapi.model.OWLOntologyCreationException;
-import org.semanticweb.owlapi.model.OWLOntologyStorageException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.exception.CreateRuleException;
@@ -14,11 +14,13 @@ import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.exception.PartialStarCreat
 import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.exception.RuleAlreadyExistsException;
 import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.service.MachineLearning;
 import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.service.PatientsService;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.service.SaveKnowledgeBaseTask;
 import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.utils.Language;
 import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.utils.SystemDefaults;
 import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.view.ViewManager;
 
 import java.io.File;
+import java.io.IOException;
 
 import static pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.utils.Language.ENGLISH;
 import static pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.utils.Language.POLISH;
@@ -67,6 +69,8 @@ public class RootLayoutController {
     private RadioMenuItem englishMenu;
     @FXML
     private RadioMenuItem polishMenu;
+    @FXML
+    private ProgressBar saveProgressBar;
 
     private PatientsService patientsService;
     private MachineLearning machineLearning;
@@ -87,6 +91,7 @@ public class RootLayoutController {
     private void initialize() {
         bindResourceBundle();
         initLanguageMenu();
+        saveProgressBar.managedProperty().bind(saveProgressBar.visibleProperty());
     }
 
     private void initLanguageMenu() {
@@ -153,13 +158,8 @@ public class RootLayoutController {
         LOG.info("Handle saving ontology.");
         File file = SystemDefaults.getDefaultOntologyFile();
         if (file != null) {
-            try {
-                patientsService.saveKnowledgeBase(file);
-            } catch (OWLOntologyStorageException e) {
-                LOG.error("Failed to save ontology to file " + file.getPath());
-                viewManager.errorExceptionDialog(getTranslation("ERROR_SAVING_ONTOLOGY"), null,
-                        getTranslation("ERROR_SAVING_ONTOLOGY_TO_FILE") + ' ' + file.getName(), e);
-            }
+            save(file, () -> {
+            });
         } else {
             handleSaveAs();
         }
@@ -177,18 +177,42 @@ public class RootLayoutController {
             if (!file.getPath().endsWith(".owl")) {
                 file = new File(file.getPath() + ".owl");
             }
-            try {
-                patientsService.saveKnowledgeBase(file);
-                setDefaultOntologyFile(file);
-                setDefaultDirectoryFile(file.getParentFile());
-                viewManager.setTitle("Diseases Diagnoser - " + file.getName());
-            } catch (OWLOntologyStorageException e) {
-                viewManager.errorExceptionDialog(getTranslation("ERROR_SAVING_ONTOLOGY"), null,
-                        getTranslation("ERROR_SAVING_ONTOLOGY_TO_FILE") + ' ' + file.getName(), e);
-            }
+            File ontologyFile = file;
+            save(ontologyFile, () -> {
+                setDefaultOntologyFile(ontologyFile);
+                setDefaultDirectoryFile(ontologyFile.getParentFile());
+                viewManager.setTitle("Diseases Diagnoser - " + ontologyFile.getName());
+            });
         }
     }
 
+    /**
+     * Saves the knowledge base on a background thread, showing the progress at the bottom
+     * of the window. The file is replaced only once the whole ontology is written.
+     */
+    private void save(File file, Runnable onSaved) {
+        SaveKnowledgeBaseTask task;
+        try {
+            task = patientsService.createSaveTask(file);
+        } catch (OWLOntologyCreationException | IOException e) {
+            showSaveError(file, e);
+            return;
+        }
+        saveProgressBar.progressProperty().bind(task.progressProperty());
+        saveProgressBar.visibleProperty().bind(task.runningProperty());
+        saveMenu.disableProperty().bind(task.runningProperty());
+        saveAsMenu.disableProperty().bind(task.runningProperty());
+        task.setOnSucceeded(event -> onSaved.run());
+        task.setOnFailed(event -> showSaveError(file, task.getException()));
+        patientsService.startSave(task);
+    }
+
+    private void showSaveError(File file, Throwable e) {
+        LOG.error("Failed to save ontology to file " + file.getPath(), e);
+        viewManager.errorExceptionDialog(getTranslation("ERROR_SAVING_ONTOLOGY"), null,
+                getTranslation("ERROR_SAVING_ONTOLOGY_TO_FILE") + ' ' + file.getName(), e);
+    }
+
     @FXML
     private void handleEditRules() {
         LOG.info("Handle edit rules.");
@@ -199,7 +223,7 @@ public class RootLayoutController {
     private void handleRunMachineLearning() {
         LOG.info("Handle run machine learning algorithm");
         try {
-            patientsService.learnNewRules(machineLearning);
+            patientsService.relearnRules(machineLearning);
         } catch (PartialStarCreationException e) {
             viewManager.errorExceptionDialog(getTranslation("ERROR_GENERATING_RULES"), e.getMessage(),
                     getTranslation("ERROR_CREATING_PARTIAL_STAR"), e);
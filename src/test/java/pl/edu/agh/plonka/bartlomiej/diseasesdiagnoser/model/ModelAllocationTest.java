@@ -0,0 +1,41 @@
+package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.*;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+import static java.util.Collections.emptyMap;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that model classes created in large numbers do not allocate state they do not need.
+ */
+public class ModelAllocationTest {
+
+    @Test
+    public void testNoLoggerPerInstance() {
+        Class<?>[] classes = {Entity.class, Patient.class, PatientRecord.class, Rule.class, AbstractAtom.class,
+                OneArgumentAtom.class, ClassDeclarationAtom.class, TwoArgumentsAtom.class, Variable.class,
+                Complex.class, NominalSelector.class, IntRangeSelector.class, Star.class, EncodedPatient.class};
+        for (Class<?> cls : classes) {
+            for (Field field : cls.getDeclaredFields())
+                assertFalse(cls.getSimpleName() + '.' + field.getName(),
+                        Logger.class.isAssignableFrom(field.getType()) && !Modifier.isStatic(field.getModifiers()));
+        }
+    }
+
+    @Test
+    public void testEmptyLanguageMapsAreNotKept() {
+        Entity entity = new Entity("Cough");
+        entity.setLanguageLabelMap(emptyMap());
+        entity.setLanguageCommentMap(emptyMap());
+        entity.setLanguage();
+        entity.setLabel("Cough");
+
+        assertEquals(1, entity.getLanguageLabelMap().size());
+        assertTrue(entity.getLanguageCommentMap().isEmpty());
+    }
+}
@@ -0,0 +1,59 @@
+package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule;
+
+import org.junit.Before;
+import org.junit.Test;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Entity;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Patient;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.PatientRecord;
+
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.*;
+import static pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.utils.Constants.*;
+
+public class CompiledRuleTest {
+
+    private final Entity patientClass = new Entity(PATIENT_CLASS);
+    private final Entity symptom = new Entity("Symptom");
+    private final Entity disease = new Entity("Disease");
+    private final Variable patientVariable = new Variable("patient", patientClass);
+    private final Variable ageVariable = new Variable("_age");
+
+    private Rule rule;
+
+    @Before
+    public void setUp() {
+        rule = new Rule("rule");
+        rule.addDeclarationAtom(new ClassDeclarationAtom<>(patientClass, patientVariable));
+        rule.addBodyAtom(new TwoArgumentsAtom<>(HAS_SYMPTOM_PROPERTY, patientVariable, symptom));
+        rule.addBodyAtom(new TwoArgumentsAtom<>(AGE_PROPERTY, patientVariable, ageVariable));
+        rule.addBodyAtom(new TwoArgumentsAtom<>(GREATER_THAN_PROPERTY, SWRLB_PREFIX, ageVariable, 10));
+        rule.addBodyAtom(new TwoArgumentsAtom<>(LESS_THAN_OR_EQUAL_PROPERTY, SWRLB_PREFIX, ageVariable, 20));
+        rule.addHeadAtom(new TwoArgumentsAtom<>(HAS_DISEASE_PROPERTY, patientVariable, disease));
+    }
+
+    @Test
+    public void testCompiledRuleMatchesPatient() {
+        CompiledRule compiledRule = CompiledRule.compile(rule);
+
+        assertNotNull(compiledRule);
+        assertEquals(singletonList(new Category(disease, Category.Predicate.HAS_DISEASE)), compiledRule.getCategories());
+        assertTrue(compiledRule.matches(createPatient(20, symptom)));
+        assertFalse(compiledRule.matches(createPatient(10, symptom)));
+        assertFalse(compiledRule.matches(createPatient(15, new Entity("OtherSymptom"))));
+        assertFalse(compiledRule.matches(createPatient(-1, symptom)));
+    }
+
+    @Test
+    public void testRuleWithUnknownPropertyIsNotCompiled() {
+        rule.addBodyAtom(new TwoArgumentsAtom<>("livesIn", patientVariable, new Entity("City")));
+
+        assertNull(CompiledRule.compile(rule));
+    }
+
+    private PatientRecord createPatient(int age, Entity symptom) {
+        Patient patient = new Patient("patient");
+        patient.setAge(age);
+        patient.addSymptom(symptom);
+        return PatientRecord.of(patient);
+    }
+}
@@ -3,6 +3,7 @@ package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule;
 import org.junit.Test;
 import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Entity;
 import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Patient;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.PatientRecord;
 
 import java.util.Arrays;
 import java.util.HashMap;
@@ -10,6 +11,7 @@ import java.util.List;
 import java.util.Map;
 
 import static java.util.Collections.singleton;
+import static org.junit.Assert.assertEquals;
 import static pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.Category.Predicate.HAS_DISEASE;
 
 public class ComplexComparatorTest {
@@ -68,4 +70,39 @@ public class ComplexComparatorTest {
         star.leaveFirstElements(1);
         Complex complex = star.get(0);
     }
+
+    @Test
+    public void testConjunctionCoverage() {
+        Entity symptom1 = SYMPTOMS.get("Symptom1");
+        Entity symptom2 = SYMPTOMS.get("Symptom2");
+        Entity disease1 = DISEASES.get("Disease1");
+
+        Patient patient1 = new Patient("patient1");
+        patient1.addSymptoms(Arrays.asList(symptom1, symptom2));
+        patient1.addDisease(disease1);
+
+        Patient patient2 = new Patient("patient2");
+        patient2.addSymptom(symptom1);
+
+        Patient patient3 = new Patient("patient3");
+        patient3.addSymptom(symptom2);
+
+        TrainingSet trainingSet = new TrainingSet(PatientRecord.of(Arrays.asList(patient1, patient2, patient3)));
+        Category category = new Category(disease1, HAS_DISEASE);
+
+        Complex complex1 = new Complex();
+        complex1.setSymptomSelector(new NominalSelector<>(singleton(symptom1)));
+        Complex complex2 = new Complex();
+        complex2.setSymptomSelector(new NominalSelector<>(singleton(symptom2)));
+        trainingSet.getCoverage(complex1);
+        trainingSet.getCoverage(complex2);
+
+        Star star = new Star();
+        star.add(Complex.conjunction(complex1, complex2));
+        star.addAll(Arrays.asList(complex1, complex2));
+        ComplexComparator.sortStar(star, category, trainingSet);
+
+        assertEquals(1, trainingSet.getCoverage(star.get(0)).cardinality());
+        assertEquals(3f, star.get(0).getEvaluation(), 0f);
+    }
 }
\ No newline at end of file
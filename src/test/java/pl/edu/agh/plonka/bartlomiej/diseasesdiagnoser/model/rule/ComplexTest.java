@@ -4,12 +4,13 @@ import org.junit.Before;
 import org.junit.Test;
 import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Entity;
 import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Patient;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.PatientRecord;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 
-import static org.junit.Assert.assertFalse;
-import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.*;
 
 public class ComplexTest {
 
@@ -46,6 +47,33 @@ public class ComplexTest {
         assertTrue(complex1.contains(complex2));
     }
 
+    @Test
+    public void testShouldContainNarrowerComplex() {
+        complex1.setSymptomSelector(createNominalSelector(symptom1));
+        complex2.setSymptomSelector(createNominalSelector(Arrays.asList(symptom1, symptom2)));
+
+        assertTrue(complex1.contains(complex2));
+        assertFalse(complex2.contains(complex1));
+    }
+
+    @Test
+    public void testConjunctionReturnsNarrowerComplex() {
+        complex1.setSymptomSelector(createNominalSelector(symptom1));
+        complex2.setSymptomSelector(createNominalSelector(Arrays.asList(symptom1, symptom2)));
+
+        assertSame(complex2, Complex.conjunction(complex1, complex2));
+        assertSame(complex2, Complex.conjunction(complex2, complex1));
+    }
+
+    @Test
+    public void testEqualComplexes() {
+        complex1.setSymptomSelector(createNominalSelector(symptom1));
+        complex2.setSymptomSelector(createNominalSelector(symptom1));
+
+        assertEquals(complex1, complex2);
+        assertEquals(complex1.hashCode(), complex2.hashCode());
+    }
+
     @Test
     public void testPatientIsCovered() {
         NominalSelector<Entity> symptomSelector = createNominalSelector(symptom1);
@@ -64,6 +92,37 @@ public class ComplexTest {
         assertFalse(complex1.isPatientCovered(patient));
     }
 
+    @Test
+    public void testEncodedPatientIsCovered() {
+        NominalSelector<Entity> symptomSelector = createNominalSelector(symptom1);
+        complex1.setSymptomSelector(symptomSelector);
+        patient.addSymptoms(Arrays.asList(symptom1, symptom2));
+
+        assertTrue(complex1.isPatientCovered(encode(patient)));
+    }
+
+    @Test
+    public void testEncodedPatientIsNotCovered() {
+        NominalSelector<Entity> symptomSelector = createNominalSelector(Arrays.asList(symptom1, symptom2));
+        complex1.setSymptomSelector(symptomSelector);
+        patient.addSymptom(symptom1);
+
+        assertFalse(complex1.isPatientCovered(encode(patient)));
+    }
+
+    @Test
+    public void testEncodedPatientIsNotCoveredByUnknownEntity() {
+        NominalSelector<Entity> symptomSelector = createNominalSelector(new Entity("symptom3"));
+        complex1.setSymptomSelector(symptomSelector);
+        patient.addSymptom(symptom1);
+
+        assertFalse(complex1.isPatientCovered(encode(patient)));
+    }
+
+    private EncodedPatient encode(Patient patient) {
+        return new TrainingSet(Collections.singleton(PatientRecord.of(patient))).get(0);
+    }
+
     private <T> NominalSelector<T> createNominalSelector(T entity) {
         NominalSelector<T> selector = new NominalSelector<>();
         selector.add(entity);
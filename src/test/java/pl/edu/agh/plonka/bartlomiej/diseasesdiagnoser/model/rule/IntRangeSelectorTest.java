@@ -0,0 +1,54 @@
+package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class IntRangeSelectorTest {
+
+    @Test
+    public void testOpenBoundsAreNotCovered() {
+        IntRangeSelector selector = IntRangeSelector.greaterThanSelector(10).intersect(IntRangeSelector.lessThanSelector(20));
+
+        assertFalse(selector.covers(10));
+        assertTrue(selector.covers(11));
+        assertTrue(selector.covers(19));
+        assertFalse(selector.covers(20));
+    }
+
+    @Test
+    public void testIntersectionKeepsBoundTypes() {
+        IntRangeSelector selector = IntRangeSelector.atLeastSelector(10).intersect(IntRangeSelector.lessThanSelector(20));
+
+        assertTrue(selector.hasLowerBound());
+        assertFalse(selector.isLowerBoundOpen());
+        assertEquals(10, selector.lowerEndpoint());
+        assertTrue(selector.hasUpperBound());
+        assertTrue(selector.isUpperBoundOpen());
+        assertEquals(20, selector.upperEndpoint());
+    }
+
+    @Test
+    public void testEnclosedSelectorIsShared() {
+        IntRangeSelector selector1 = IntRangeSelector.atMostSelector(30);
+        IntRangeSelector selector2 = IntRangeSelector.lessThanSelector(20);
+
+        assertTrue(selector1.encloses(selector2));
+        assertFalse(selector2.encloses(selector1));
+        assertSame(selector2, selector1.intersect(selector2));
+    }
+
+    @Test
+    public void testEquivalentIntegerBoundsEnclose() {
+        assertTrue(IntRangeSelector.greaterThanSelector(5).encloses(IntRangeSelector.atLeastSelector(6)));
+        assertTrue(IntRangeSelector.atLeastSelector(6).encloses(IntRangeSelector.greaterThanSelector(5)));
+    }
+
+    @Test
+    public void testDisjointSelectorsHaveNoIntersection() {
+        assertNull(IntRangeSelector.atMostSelector(10).intersect(IntRangeSelector.atLeastSelector(20)));
+        assertNull(IntRangeSelector.lessThanSelector(10).intersect(IntRangeSelector.atLeastSelector(10)));
+        assertNull(IntRangeSelector.greaterThanSelector(9).intersect(IntRangeSelector.lessThanSelector(10)));
+        assertNotNull(IntRangeSelector.atMostSelector(10).intersect(IntRangeSelector.atLeastSelector(10)));
+    }
+}
@@ -0,0 +1,55 @@
+package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule;
+
+import org.junit.Before;
+import org.junit.Test;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Entity;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Patient;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.PatientRecord;
+
+import java.util.Arrays;
+
+import static java.util.Collections.singleton;
+import static org.junit.Assert.assertEquals;
+
+public class PatientDistancesTest {
+
+    private TrainingSet trainingSet;
+    private PatientDistances distances;
+
+    @Before
+    public void setUp() throws Exception {
+        Entity symptom1 = new Entity("symptom1");
+        Entity symptom2 = new Entity("symptom2");
+        Patient patient1 = new Patient("patient1");
+        patient1.setSymptoms(singleton(symptom1));
+        patient1.setAge(20);
+        Patient patient2 = new Patient("patient2");
+        patient2.setSymptoms(Arrays.asList(symptom1, symptom2));
+        patient2.setAge(70);
+        Patient patient3 = new Patient("patient3");
+        patient3.setSymptoms(singleton(symptom2));
+        trainingSet = new TrainingSet(PatientRecord.of(Arrays.asList(patient1, patient2, patient3)));
+        distances = new PatientDistances(trainingSet, 4, 0, 0);
+    }
+
+    @Test
+    public void testDistance() {
+        assertEquals(0.25f + 0.5f, distances.distance(trainingSet.get(0), trainingSet.get(1)), 1e-6f);
+    }
+
+    @Test
+    public void testDistanceIsSymmetric() {
+        assertEquals(distances.distance(trainingSet.get(0), trainingSet.get(1)),
+                distances.distance(trainingSet.get(1), trainingSet.get(0)), 0f);
+    }
+
+    @Test
+    public void testUnknownAgeIsIgnored() {
+        assertEquals(0.5f, distances.distance(trainingSet.get(0), trainingSet.get(2)), 1e-6f);
+    }
+
+    @Test
+    public void testDistanceToItself() {
+        assertEquals(0f, distances.distance(trainingSet.get(1), trainingSet.get(1)), 0f);
+    }
+}
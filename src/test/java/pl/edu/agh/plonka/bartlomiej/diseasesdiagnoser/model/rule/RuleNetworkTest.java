@@ -0,0 +1,78 @@
+package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule;
+
+import org.junit.Before;
+import org.junit.Test;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Entity;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Patient;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.PatientRecord;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.utils.Constants.*;
+
+public class RuleNetworkTest {
+
+    private final Entity patientClass = new Entity(PATIENT_CLASS);
+    private final Entity symptom1 = new Entity("Symptom1");
+    private final Entity symptom2 = new Entity("Symptom2");
+    private final Entity disease = new Entity("Disease");
+    private final Variable patientVariable = new Variable("patient", patientClass);
+    private final Variable ageVariable = new Variable("_age");
+
+    private CompiledRule symptomRule;
+    private CompiledRule symptomsRule;
+    private CompiledRule ageRule;
+    private RuleNetwork network;
+
+    @Before
+    public void setUp() {
+        symptomRule = CompiledRule.compile(createRule("symptom", symptom1));
+        symptomsRule = CompiledRule.compile(createRule("symptoms", symptom1, symptom2));
+        Rule rule = createRule("age", symptom1);
+        rule.addBodyAtom(new TwoArgumentsAtom<>(AGE_PROPERTY, patientVariable, ageVariable));
+        rule.addBodyAtom(new TwoArgumentsAtom<>(GREATER_THAN_OR_EQUAL_PROPERTY, SWRLB_PREFIX, ageVariable, 18));
+        ageRule = CompiledRule.compile(rule);
+
+        network = new RuleNetwork();
+        network.add(symptomRule);
+        network.add(symptomsRule);
+        network.add(ageRule);
+    }
+
+    @Test
+    public void testMatchingSharedConditions() {
+        assertEquals(singletonList(symptomRule), network.match(createPatient(10, symptom1, symptom1)));
+        assertEquals(asList(symptomRule, symptomsRule), network.match(createPatient(10, symptom1, symptom2)));
+        assertEquals(asList(symptomRule, ageRule), network.match(createPatient(18, symptom1)));
+        assertEquals(emptyList(), network.match(createPatient(30, symptom2)));
+    }
+
+    @Test
+    public void testRemovingRule() {
+        network.remove(symptomRule);
+        assertEquals(singletonList(ageRule), network.match(createPatient(18, symptom1)));
+
+        network.add(symptomRule);
+        assertEquals(asList(symptomRule, ageRule), network.match(createPatient(18, symptom1)));
+        assertEquals(3, network.size());
+    }
+
+    private Rule createRule(String name, Entity... symptoms) {
+        Rule rule = new Rule(name);
+        rule.addDeclarationAtom(new ClassDeclarationAtom<>(patientClass, patientVariable));
+        for (Entity symptom : symptoms)
+            rule.addBodyAtom(new TwoArgumentsAtom<>(HAS_SYMPTOM_PROPERTY, patientVariable, symptom));
+        rule.addHeadAtom(new TwoArgumentsAtom<>(HAS_DISEASE_PROPERTY, patientVariable, disease));
+        return rule;
+    }
+
+    private PatientRecord createPatient(int age, Entity... symptoms) {
+        Patient patient = new Patient("patient");
+        patient.setAge(age);
+        for (Entity symptom : symptoms)
+            patient.addSymptom(symptom);
+        return PatientRecord.of(patient);
+    }
+}
@@ -0,0 +1,75 @@
+package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule;
+
+import org.junit.Before;
+import org.junit.Test;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Entity;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class StarTest {
+
+    private Star star;
+    private Entity symptom1;
+    private Entity symptom2;
+
+    @Before
+    public void setUp() throws Exception {
+        star = new Star();
+        star.clear();
+        symptom1 = new Entity("symptom1");
+        symptom2 = new Entity("symptom2");
+    }
+
+    @Test
+    public void testInsertRejectsNarrowerComplex() {
+        assertTrue(star.insert(createComplex(symptom1)));
+        assertFalse(star.insert(createComplex(symptom1, symptom2)));
+        assertEquals(1, star.size());
+    }
+
+    @Test
+    public void testInsertRemovesNarrowerComplexes() {
+        star.insert(createComplex(symptom1, symptom2));
+        star.insert(createComplex(symptom1));
+        assertEquals(1, star.size());
+        assertEquals(1, star.get(0).getSymptomSelector().size());
+    }
+
+    @Test
+    public void testInsertKeepsOneOfEqualComplexes() {
+        star.insert(createComplex(symptom1));
+        star.insert(createComplex(symptom1));
+        assertEquals(1, star.size());
+    }
+
+    @Test
+    public void testIntersectionSkipsComplexesWithTooManySelectors() {
+        star.insert(createComplex(symptom1));
+        star.intersection(Arrays.asList(createComplex(symptom1), createComplex(symptom2)), 1);
+        assertEquals(1, star.size());
+        assertEquals(1, star.get(0).getSelectorsCount());
+    }
+
+    @Test
+    public void testIntersectionDropsComplexesWithDisjointRanges() {
+        Complex youngComplex = new Complex();
+        youngComplex.setAgeSelector(IntRangeSelector.atMostSelector(10));
+        Complex oldComplex = new Complex();
+        oldComplex.setAgeSelector(IntRangeSelector.atLeastSelector(20));
+        star.insert(youngComplex);
+
+        star.intersection(Arrays.asList(oldComplex, createComplex(symptom1)));
+
+        assertEquals(1, star.size());
+        assertEquals(IntRangeSelector.atMostSelector(10), star.get(0).getAgeSelector());
+        assertNull(Complex.conjunction(youngComplex, oldComplex));
+    }
+
+    private Complex createComplex(Entity... symptoms) {
+        Complex complex = new Complex();
+        complex.setSymptomSelector(new NominalSelector<>(Arrays.asList(symptoms)));
+        return complex;
+    }
+}
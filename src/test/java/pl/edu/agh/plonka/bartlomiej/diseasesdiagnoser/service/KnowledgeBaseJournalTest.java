@@ -0,0 +1,154 @@
+package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.service;
+
+import org.junit.Before;
+import org.junit.Test;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Entity;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Patient;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.Rule;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class KnowledgeBaseJournalTest {
+
+    private static final File ONTOLOGY_FILE = new File("src/test/resources/human_diseases.owl");
+
+    private File file;
+    private OntologyWrapper ontology;
+
+    @Before
+    public void setUp() throws Exception {
+        file = new File(Files.createTempDirectory("journal").toFile(), ONTOLOGY_FILE.getName());
+        Files.copy(ONTOLOGY_FILE.toPath(), file.toPath());
+        ontology = new OntologyWrapper(file);
+    }
+
+    @Test
+    public void testReplay() throws Exception {
+        Patient patient = new Patient("Patient_journal", "Jan", "Kowalski");
+        patient.setAge(42);
+        ontology.getSymptoms().values().stream().findFirst().ifPresent(patient::addSymptom);
+        KnowledgeBaseJournal journal = KnowledgeBaseJournal.open(file);
+        journal.putPatient(patient);
+        journal.deleteRule(new Rule("Generated_hasDisease_Cold_0"));
+        journal.deletePatient(new Patient("Patient_deleted"));
+
+        RecordingChanges changes = replay();
+        assertEquals(asList("putPatient Patient_journal", "deleteRule Generated_hasDisease_Cold_0",
+                "deletePatient Patient_deleted"), changes.changes);
+        Patient replayed = changes.patients.get(0);
+        assertEquals("Kowalski", replayed.getLastName());
+        assertEquals(42, replayed.getAge());
+        assertEquals(patient.getSymptoms(), replayed.getSymptoms());
+    }
+
+    @Test
+    public void testPatientStubIsNotJournaled() throws Exception {
+        Patient stub = new Patient("Patient_stub", "Jan", "Kowalski");
+        stub.setLoaded(false);
+        KnowledgeBaseJournal journal = KnowledgeBaseJournal.open(file);
+        long sequence = journal.getSequence();
+        try {
+            journal.putPatient(stub);
+            fail("Patient which is not loaded was journaled.");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        journal.putPatient(new Patient("Patient_loaded"));
+
+        assertEquals(sequence + 1, journal.getSequence());
+        assertEquals(asList("putPatient Patient_loaded"), replay().changes);
+    }
+
+    @Test
+    public void testChangesMadeWhileSavingSurviveCheckpoint() throws Exception {
+        KnowledgeBaseJournal journal = KnowledgeBaseJournal.open(file);
+        journal.putPatient(new Patient("Patient_saved"));
+        long sequence = journal.getSequence();
+        journal.putPatient(new Patient("Patient_unsaved"));
+
+        byte[] previousContent = Files.readAllBytes(file.toPath());
+        byte[] savedContent = (new String(previousContent, "UTF-8") + '\n').getBytes("UTF-8");
+        CRC32 checksum = new CRC32();
+        checksum.update(savedContent);
+        journal.checkpoint(file, sequence, checksum.getValue());
+        File journalFile = KnowledgeBaseJournal.getJournalFile(file);
+        byte[] checkpointedJournal = Files.readAllBytes(journalFile.toPath());
+
+        Files.write(file.toPath(), savedContent);
+        assertEquals(asList("putPatient Patient_unsaved"), replay().changes);
+
+        Files.write(file.toPath(), previousContent);
+        Files.write(journalFile.toPath(), checkpointedJournal);
+        assertEquals(asList("putPatient Patient_saved", "putPatient Patient_unsaved"), replay().changes);
+
+        journal = KnowledgeBaseJournal.open(file);
+        Files.write(file.toPath(), savedContent);
+        journal.compact(file, journal.getSequence() - 1, checksum.getValue());
+        assertEquals(1, journal.size());
+        assertEquals(asList("putPatient Patient_unsaved"), replay().changes);
+    }
+
+    @Test
+    public void testAppendAfterCompact() throws Exception {
+        KnowledgeBaseJournal journal = KnowledgeBaseJournal.open(file);
+        journal.putPatient(new Patient("Patient_saved"));
+        journal.compact(file, journal.getSequence(), KnowledgeBaseSnapshot.checksum(file));
+        journal.putPatient(new Patient("Patient_unsaved"));
+        journal.close();
+
+        assertEquals(1, journal.size());
+        assertEquals(asList("putPatient Patient_unsaved"), replay().changes);
+    }
+
+    private RecordingChanges replay() throws Exception {
+        RecordingChanges changes = new RecordingChanges();
+        KnowledgeBaseJournal.open(file).replay(ontology, changes);
+        return changes;
+    }
+
+    private static class RecordingChanges implements KnowledgeBaseJournal.Changes {
+
+        private final List<String> changes = new ArrayList<>();
+        private final List<Patient> patients = new ArrayList<>();
+
+        @Override
+        public void putPatient(Patient patient) {
+            changes.add("putPatient " + patient.getID());
+            patients.add(patient);
+        }
+
+        @Override
+        public void deletePatient(String id) {
+            changes.add("deletePatient " + id);
+        }
+
+        @Override
+        public void putEntity(Entity entity, Map<String, Entity> instances) {
+            changes.add("putEntity " + entity.getID());
+        }
+
+        @Override
+        public void deleteEntity(String id) {
+            changes.add("deleteEntity " + id);
+        }
+
+        @Override
+        public void putRule(Rule rule) {
+            changes.add("putRule " + rule.getName());
+        }
+
+        @Override
+        public void deleteRule(String name) {
+            changes.add("deleteRule " + name);
+        }
+    }
+}
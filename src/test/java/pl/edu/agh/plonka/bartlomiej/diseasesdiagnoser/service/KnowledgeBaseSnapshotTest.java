@@ -0,0 +1,90 @@
+package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.service;
+
+import org.junit.Before;
+import org.junit.Test;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Entity;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Patient;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.Rule;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+import static org.junit.Assert.*;
+
+public class KnowledgeBaseSnapshotTest {
+
+    private static final File ONTOLOGY_FILE = new File("src/test/resources/human_diseases.owl");
+
+    private File file;
+    private OntologyWrapper ontology;
+
+    @Before
+    public void setUp() throws Exception {
+        file = new File(Files.createTempDirectory("snapshot").toFile(), ONTOLOGY_FILE.getName());
+        Files.copy(ONTOLOGY_FILE.toPath(), file.toPath());
+        ontology = new OntologyWrapper(file);
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        List<Patient> patients = ontology.getPatientStubs();
+        KnowledgeBaseSnapshot.write(file, ontology, patients);
+
+        KnowledgeBaseSnapshot snapshot = KnowledgeBaseSnapshot.read(file);
+        assertNotNull(snapshot);
+        assertEntities(ontology.getClasses(), snapshot.getClasses());
+        assertEntities(ontology.getSymptoms(), snapshot.getSymptoms());
+        assertEntities(ontology.getDiseases(), snapshot.getDiseases());
+        assertEntities(ontology.getTests(), snapshot.getTests());
+        assertEntities(ontology.getTreatments(), snapshot.getTreatments());
+        assertEntities(ontology.getCauses(), snapshot.getCauses());
+        assertEquals(ruleStrings(ontology.getRules()), ruleStrings(snapshot.getRules()));
+        assertEquals(patientStrings(patients), patientStrings(snapshot.getPatients()));
+
+        OntologyWrapper restored = new OntologyWrapper(file, snapshot);
+        assertEquals(ruleStrings(ontology.getRules()), ruleStrings(restored.getRules()));
+    }
+
+    @Test
+    public void testOutdatedSnapshotIsIgnored() throws Exception {
+        KnowledgeBaseSnapshot.write(file, ontology, ontology.getPatientStubs());
+        File snapshotFile = KnowledgeBaseSnapshot.getSnapshotFile(file);
+
+        Files.write(file.toPath(), "\n".getBytes(), StandardOpenOption.APPEND);
+        assertTrue(snapshotFile.setLastModified(file.lastModified() + 1000));
+        assertNull(KnowledgeBaseSnapshot.read(file));
+    }
+
+    @Test
+    public void testSnapshotOfTouchedFileIsUsed() throws Exception {
+        KnowledgeBaseSnapshot.write(file, ontology, ontology.getPatientStubs());
+
+        assertTrue(file.setLastModified(file.lastModified() - 1000));
+        assertNotNull(KnowledgeBaseSnapshot.read(file));
+    }
+
+    private static void assertEntities(Map<String, Entity> expected, Map<String, Entity> actual) {
+        assertEquals(expected.keySet(), actual.keySet());
+        for (Entity entity : expected.values()) {
+            Entity restored = actual.get(entity.getID());
+            assertEquals(entity.getLabel(), restored.getLabel());
+            assertEquals(entity.getLanguageLabelMap(), restored.getLanguageLabelMap());
+            assertEquals(entity.getClasses(), restored.getClasses());
+        }
+    }
+
+    private static List<String> patientStrings(Collection<Patient> patients) {
+        return patients.stream().map(patient -> patient.getID() + ' ' + patient).collect(toList());
+    }
+
+    private static Set<String> ruleStrings(Collection<Rule> rules) {
+        return rules.stream().map(Rule::toString).collect(toSet());
+    }
+}
@@ -1,10 +1,12 @@
 package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.service;
 
+import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.slf4j.Logger;
 import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Entity;
 import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Patient;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.Category;
 import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.Rule;
 
 import java.io.File;
@@ -21,9 +23,11 @@ import static java.util.Arrays.stream;
 import static java.util.Collections.singleton;
 import static java.util.function.Function.identity;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.slf4j.LoggerFactory.getLogger;
+import static pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.Category.Predicate.HAS_DISEASE;
 import static pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.utils.Constants.*;
 
 public class MachineLearningTest {
@@ -80,6 +84,11 @@ public class MachineLearningTest {
         machineLearning = new MachineLearning(ontology);
     }
 
+    @AfterClass
+    public static void tearDown() {
+        machineLearning.close();
+    }
+
     @Test
     public void testNumericalComplexity() throws Throwable {
         PrintWriter results = new PrintWriter(new FileOutputStream(
@@ -108,6 +117,23 @@ public class MachineLearningTest {
         assertEquals(3, rules.size());
     }
 
+    @Test
+    public void testFindingInvalidatedCategories() throws Throwable {
+        Set<Patient> patients = new HashSet<>();
+        patients.add(generatePatient("patient1", 24, "StabbingChestPain", "EKG", "Myocarditis"));
+        patients.add(generatePatient("patient2", 24, "Dyspnoea", "ChestXRay", "Pericarditis"));
+        patients.add(generatePatient("patient3", 60, "StabbingChestPain", "ChestXRay", "LungCancer"));
+        machineLearning.sequentialCovering(patients);
+
+        Patient describedPatient = generatePatient("patient4", 24, "StabbingChestPain", "EKG", "Myocarditis");
+        assertTrue(machineLearning.findInvalidatedCategories(singleton(describedPatient)).isEmpty());
+
+        Patient contradictingPatient = generatePatient("patient5", 24, "StabbingChestPain", "EKG", "Cold");
+        Collection<Category> categories = machineLearning.findInvalidatedCategories(singleton(contradictingPatient));
+        assertTrue(categories.contains(new Category(ontology.getDiseases().get("Myocarditis"), HAS_DISEASE)));
+        assertTrue(categories.contains(new Category(ontology.getDiseases().get("Cold"), HAS_DISEASE)));
+    }
+
     private Set<Patient> generatePatients(int count) {
         Set<Patient> patients = new HashSet<>(count);
         for (int i = 0; i < count; i++) {
@@ -0,0 +1,88 @@
+package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.service;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.semanticweb.owlapi.model.AddAxiom;
+import org.semanticweb.owlapi.model.OWLAxiomChange;
+import org.semanticweb.owlapi.model.OWLObjectPropertyAssertionAxiom;
+import org.semanticweb.owlapi.model.RemoveAxiom;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Entity;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Patient;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import static java.util.Collections.singleton;
+import static java.util.stream.Collectors.toSet;
+import static org.junit.Assert.*;
+
+public class OntologyWrapperTest {
+
+    private static final File ONTOLOGY_FILE = new File("src/test/resources/human_diseases.owl");
+
+    private File file;
+    private OntologyWrapper ontology;
+
+    @Before
+    public void setUp() throws Exception {
+        file = new File(Files.createTempDirectory("ontology").toFile(), ONTOLOGY_FILE.getName());
+        Files.copy(ONTOLOGY_FILE.toPath(), file.toPath());
+        ontology = new OntologyWrapper(file);
+    }
+
+    @Test
+    public void testUpdatePatient() throws Exception {
+        Entity inflammation = ontology.getSymptoms().get("Inflammation");
+        Entity musclePain = ontology.getSymptoms().get("MusclePain");
+        Patient patient = new Patient("Patient_edited", "Jan", "Kowalski");
+        patient.addSymptom(inflammation);
+        ontology.addPatient(patient);
+        assertFalse(ids(patient.getInferredDiseases()).contains("Cold"));
+
+        patient.addSymptom(musclePain);
+        List<OWLAxiomChange> changes = ontology.getPatientChanges(patient);
+        assertEquals(1, changes.size());
+        assertTrue(changes.get(0) instanceof AddAxiom);
+        assertEquals("MusclePain", getSymptom(changes.get(0)));
+        ontology.updatePatient(patient);
+        assertTrue(ids(patient.getInferredDiseases()).contains("Cold"));
+        assertTrue(ontology.getPatientChanges(patient).isEmpty());
+        assertEquals(ids(patient.getInferredDiseases()), ids(reload(patient).getInferredDiseases()));
+
+        patient.getSymptoms().remove(musclePain);
+        changes = ontology.getPatientChanges(patient);
+        assertEquals(1, changes.size());
+        assertTrue(changes.get(0) instanceof RemoveAxiom);
+        assertEquals("MusclePain", getSymptom(changes.get(0)));
+        ontology.updatePatient(patient);
+        assertFalse(ids(patient.getInferredDiseases()).contains("Cold"));
+        assertEquals(ids(patient.getInferredDiseases()), ids(reload(patient).getInferredDiseases()));
+    }
+
+    /**
+     * @return the patient inferred by a new reasoner from the saved ontology
+     */
+    private Patient reload(Patient patient) throws Exception {
+        ontology.saveOntologyToFile(file);
+        OntologyWrapper reloaded = new OntologyWrapper(file);
+        Patient stub = reloaded.getPatientStubs().stream()
+                .filter(p -> p.getID().equals(patient.getID()))
+                .findFirst()
+                .orElseThrow(AssertionError::new);
+        reloaded.loadPatients(singleton(stub));
+        return stub;
+    }
+
+    private static String getSymptom(OWLAxiomChange change) {
+        OWLObjectPropertyAssertionAxiom axiom = (OWLObjectPropertyAssertionAxiom) change.getAxiom();
+        assertEquals("hasSymptom", axiom.getProperty().asOWLObjectProperty().getIRI().getShortForm());
+        return axiom.getObject().asOWLNamedIndividual().getIRI().getShortForm();
+    }
+
+    private static Set<String> ids(Collection<Entity> entities) {
+        return entities.stream().map(Entity::getID).collect(toSet());
+    }
+}
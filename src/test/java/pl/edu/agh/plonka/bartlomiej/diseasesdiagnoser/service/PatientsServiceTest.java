@@ -0,0 +1,80 @@
+package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Patient;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.Rule;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Set;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singleton;
+import static java.util.stream.Collectors.toSet;
+import static org.junit.Assert.*;
+import static pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.utils.Constants.GENERATED_RULE_PREFIX;
+
+public class PatientsServiceTest {
+
+    private static final File ONTOLOGY_FILE = new File("src/test/resources/human_diseases.owl");
+
+    private File directory;
+    private PatientsService patientsService;
+    private MachineLearning machineLearning;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("patients").toFile();
+        File file = new File(directory, ONTOLOGY_FILE.getName());
+        Files.copy(ONTOLOGY_FILE.toPath(), file.toPath());
+        patientsService = new PatientsService(file);
+        machineLearning = new MachineLearning(patientsService.getOntology());
+    }
+
+    @After
+    public void tearDown() {
+        machineLearning.close();
+    }
+
+    @Test
+    public void testRelearnRulesOfOpenedKnowledgeBase() throws Throwable {
+        OntologyWrapper ontology = patientsService.getOntology();
+        patientsService.deletePatients(new ArrayList<>(patientsService.getPatients()));
+        patientsService.addPatients(asList(
+                createPatient("patient1", 24, "StabbingChestPain", "EKG", "Myocarditis"),
+                createPatient("patient2", 24, "Dyspnoea", "ChestXRay", "Pericarditis"),
+                createPatient("patient3", 60, "StabbingChestPain", "ChestXRay", "LungCancer")));
+        File secondFile = new File(directory, "second.owl");
+        ontology.saveOntologyToFile(secondFile);
+        patientsService.learnNewRules(machineLearning);
+        Set<String> learnedRules = getGeneratedRules();
+        assertEquals(3, learnedRules.size());
+
+        patientsService.createKnowledgeBase(secondFile);
+        assertTrue(getGeneratedRules().isEmpty());
+        patientsService.relearnRules(machineLearning);
+
+        assertSame(patientsService.getOntology(), machineLearning.getOntology());
+        assertEquals(learnedRules, getGeneratedRules());
+    }
+
+    private Set<String> getGeneratedRules() {
+        return patientsService.getRules().stream()
+                .map(Rule::getName)
+                .filter(name -> name.startsWith(GENERATED_RULE_PREFIX))
+                .collect(toSet());
+    }
+
+    private Patient createPatient(String id, int age, String symptom, String negativeTest, String disease) {
+        OntologyWrapper ontology = patientsService.getOntology();
+        Patient patient = new Patient(id);
+        patient.setAge(age);
+        patient.setSymptoms(singleton(ontology.getSymptoms().get(symptom)));
+        patient.setNegativeTests(singleton(ontology.getTests().get(negativeTest)));
+        patient.setDiseases(singleton(ontology.getDiseases().get(disease)));
+        return patient;
+    }
+}
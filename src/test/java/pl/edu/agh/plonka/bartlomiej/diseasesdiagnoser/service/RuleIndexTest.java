@@ -0,0 +1,68 @@
+package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.service;
+
+import org.junit.Before;
+import org.junit.Test;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Entity;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.ClassDeclarationAtom;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.Rule;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.TwoArgumentsAtom;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.Variable;
+
+import java.util.HashSet;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.*;
+import static org.junit.Assert.assertEquals;
+import static pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.utils.Constants.*;
+
+public class RuleIndexTest {
+
+    private final Entity patientClass = new Entity(PATIENT_CLASS);
+    private final Entity symptom1 = new Entity("Symptom1");
+    private final Entity symptom2 = new Entity("Symptom2");
+    private final Entity disease = new Entity("Disease");
+    private final Variable patientVariable = new Variable("patient", patientClass);
+
+    private Rule symptomRule;
+    private Rule symptomsRule;
+    private Rule ageRule;
+    private RuleIndex ruleIndex;
+
+    @Before
+    public void setUp() {
+        symptomRule = createRule("symptom", symptom1);
+        symptomsRule = createRule("symptoms", symptom1, symptom2);
+        ageRule = createRule("age");
+        ageRule.addDeclarationAtom(new TwoArgumentsAtom<>(AGE_PROPERTY, patientVariable, new Variable("_age")));
+        ageRule.addBodyAtom(new TwoArgumentsAtom<>(GREATER_THAN_PROPERTY, SWRLB_PREFIX, new Variable("_age"), 18));
+
+        ruleIndex = new RuleIndex();
+        ruleIndex.addRules(asList(symptomRule, symptomsRule, ageRule));
+    }
+
+    @Test
+    public void testPostingListsIntersection() {
+        assertEquals(new HashSet<>(asList(symptomRule, symptomsRule)), ruleIndex.getRulesReferencingAll(singleton(symptom1)));
+        assertEquals(singleton(symptomsRule), ruleIndex.getRulesReferencingAll(asList(symptom1, symptom2)));
+        assertEquals(emptySet(), ruleIndex.getRulesReferencingAll(asList(symptom1, disease)));
+    }
+
+    @Test
+    public void testAffectedRules() {
+        assertEquals(new HashSet<>(asList(symptomsRule, ageRule)), ruleIndex.getAffectedRules(singleton(symptom2), singleton(AGE_PROPERTY)));
+        assertEquals(emptySet(), ruleIndex.getAffectedRules(singleton(disease), singleton(HEIGHT_PROPERTY)));
+
+        ruleIndex.removeRule(symptomsRule);
+        assertEquals(emptySet(), ruleIndex.getAffectedRules(singleton(symptom2), emptyList()));
+        assertEquals(singleton(symptomRule), ruleIndex.getRules(symptom1));
+    }
+
+    private Rule createRule(String name, Entity... symptoms) {
+        Rule rule = new Rule(name);
+        rule.addDeclarationAtom(new ClassDeclarationAtom<>(patientClass, patientVariable));
+        for (Entity symptom : symptoms)
+            rule.addBodyAtom(new TwoArgumentsAtom<>(HAS_SYMPTOM_PROPERTY, patientVariable, symptom));
+        rule.addHeadAtom(new TwoArgumentsAtom<>(HAS_DISEASE_PROPERTY, patientVariable, disease));
+        return rule;
+    }
+}
@@ -0,0 +1,81 @@
+package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.service;
+
+import org.junit.Before;
+import org.junit.Test;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Entity;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.Category;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.ClassDeclarationAtom;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.Rule;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.TwoArgumentsAtom;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.Variable;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singleton;
+import static org.junit.Assert.*;
+import static pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.Category.Predicate.HAS_DISEASE;
+import static pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.utils.Constants.*;
+
+public class RuleRegistryTest {
+
+    private final Entity patientClass = new Entity(PATIENT_CLASS);
+    private final Entity cold = new Entity("Cold");
+    private final Entity flu = new Entity("Flu");
+    private final Entity xRay = new Entity("ChestXRay");
+    private final Variable patientVariable = new Variable("patient", patientClass);
+
+    private Rule coldRule;
+    private Rule fluRule;
+    private Rule testRule;
+    private Rule customRule;
+    private RuleRegistry ruleRegistry;
+
+    @Before
+    public void setUp() {
+        coldRule = createRule("Generated_hasDisease_Cold_0", HAS_DISEASE_PROPERTY, cold);
+        fluRule = createRule("Generated_hasDisease_Flu_0", HAS_DISEASE_PROPERTY, flu);
+        testRule = createRule("Generated_shouldMakeTest_ChestXRay_0", SHOULD_MAKE_TEST_PROPERTY, xRay);
+        customRule = createRule("Cold", HAS_DISEASE_PROPERTY, cold);
+
+        ruleRegistry = new RuleRegistry();
+        ruleRegistry.addRules(asList(testRule, coldRule, customRule, fluRule));
+    }
+
+    @Test
+    public void testLookupByName() {
+        assertTrue(ruleRegistry.contains("Cold"));
+        assertFalse(ruleRegistry.contains("Flu"));
+        assertSame(fluRule, ruleRegistry.getRule(fluRule.getName()));
+        assertEquals(asList(customRule, coldRule, fluRule, testRule), new ArrayList<>(ruleRegistry.getRules()));
+    }
+
+    @Test
+    public void testSecondaryIndexes() {
+        assertEquals(asList(coldRule, fluRule), ruleRegistry.getRulesByPrefix(GENERATED_RULE_PREFIX + '_' + HAS_DISEASE_PROPERTY));
+        assertEquals(new HashSet<>(asList(coldRule, fluRule, customRule)), ruleRegistry.getRulesByPredicate(HAS_DISEASE_PROPERTY));
+        assertEquals(new HashSet<>(asList(coldRule, customRule)), ruleRegistry.getRulesByCategory(new Category(cold, HAS_DISEASE)));
+    }
+
+    @Test
+    public void testReplaceAndRemove() {
+        Rule newColdRule = createRule(coldRule.getName(), HAS_DISEASE_PROPERTY, flu);
+        ruleRegistry.addRule(newColdRule);
+        assertEquals(4, ruleRegistry.size());
+        assertEquals(singleton(customRule), ruleRegistry.getRulesByCategory(new Category(cold, HAS_DISEASE)));
+
+        ruleRegistry.removeRules(ruleRegistry.getRulesByPrefix(GENERATED_RULE_PREFIX));
+        assertEquals(singleton(customRule), new HashSet<>(ruleRegistry.getRules()));
+        assertEquals(emptySet(), ruleRegistry.getRulesByCategory(new Category(flu, HAS_DISEASE)));
+        assertNull(ruleRegistry.removeRule(fluRule.getName()));
+    }
+
+    private Rule createRule(String name, String predicate, Entity entity) {
+        Rule rule = new Rule(name);
+        rule.addDeclarationAtom(new ClassDeclarationAtom<>(patientClass, patientVariable));
+        rule.addHeadAtom(new TwoArgumentsAtom<>(predicate, patientVariable, entity));
+        return rule;
+    }
+}
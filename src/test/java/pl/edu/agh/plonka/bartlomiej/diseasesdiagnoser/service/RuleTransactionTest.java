@@ -0,0 +1,105 @@
+package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.service;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.swrlapi.core.SWRLAPIRule;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.exception.CreateRuleException;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Entity;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.Patient;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.AbstractAtom;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.ClassDeclarationAtom;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.Rule;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.TwoArgumentsAtom;
+import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.Variable;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toSet;
+import static org.junit.Assert.*;
+import static pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.utils.Constants.*;
+
+public class RuleTransactionTest {
+
+    private static final File ONTOLOGY_FILE = new File("src/test/resources/human_diseases.owl");
+
+    private final Entity patientClass = new Entity(PATIENT_CLASS);
+    private final Variable patientVariable = new Variable("patient", patientClass);
+
+    private PatientsService patientsService;
+    private OntologyWrapper ontology;
+
+    @Before
+    public void setUp() throws Exception {
+        File file = new File(Files.createTempDirectory("transaction").toFile(), ONTOLOGY_FILE.getName());
+        Files.copy(ONTOLOGY_FILE.toPath(), file.toPath());
+        patientsService = new PatientsService(file);
+        patientsService.loadPatients();
+        ontology = patientsService.getOntology();
+    }
+
+    @Test
+    public void testRollbackWhenRuleCannotBeCreated() throws Exception {
+        Rule deletedRule = ontology.getRules().iterator().next();
+        Rule validRule = createRule("Transaction_valid", ontology.getSymptoms().get("Cough"));
+        Rule invalidRule = createRule("Transaction_invalid", new Entity("Transaction_unknown_symptom"));
+
+        Set<String> ruleOntologyRules = getRuleOntologyRules();
+        List<Rule> registryRules = new ArrayList<>(ontology.getRuleRegistry().getRules());
+        Set<Rule> indexedRules = getIndexedRules();
+        Set<Rule> diseaseRules = new HashSet<>(ontology.getRuleRegistry().getRulesByPredicate(HAS_DISEASE_PROPERTY));
+        Entity inferenceMarker = new Entity("Transaction_inference_marker");
+        for (Patient patient : patientsService.getPatients())
+            patient.getInferredDiseases().add(inferenceMarker);
+
+        try {
+            patientsService.beginRuleTransaction().delete(deletedRule).add(validRule).add(invalidRule).commit();
+            fail("Rule which cannot be parsed was created.");
+        } catch (CreateRuleException e) {
+            // expected
+        }
+
+        assertEquals(ruleOntologyRules, getRuleOntologyRules());
+        assertEquals(registryRules, new ArrayList<>(ontology.getRuleRegistry().getRules()));
+        assertEquals(diseaseRules, ontology.getRuleRegistry().getRulesByPredicate(HAS_DISEASE_PROPERTY));
+        assertEquals(indexedRules, getIndexedRules());
+        assertEquals(registryRules.size(), patientsService.getRules().size());
+        for (Patient patient : patientsService.getPatients())
+            assertTrue(patient.getID(), patient.getInferredDiseases().contains(inferenceMarker));
+    }
+
+    private Set<String> getRuleOntologyRules() {
+        return ontology.getRuleOntology().getSWRLRules().stream()
+                .map(SWRLAPIRule::getRuleName)
+                .collect(toSet());
+    }
+
+    /**
+     * @return rules indexed by any entity or property of the knowledge base
+     */
+    private Set<Rule> getIndexedRules() {
+        List<Entity> entities = new ArrayList<>(ontology.getSymptoms().values());
+        entities.addAll(ontology.getDiseases().values());
+        entities.addAll(ontology.getTests().values());
+        entities.addAll(ontology.getTreatments().values());
+        entities.addAll(ontology.getCauses().values());
+        Set<String> properties = ontology.getRuleRegistry().getRules().stream()
+                .flatMap(rule -> Stream.concat(rule.getDeclarationAtoms().stream(), rule.getBodyAtoms().stream()))
+                .map(AbstractAtom::getPredicate)
+                .collect(toSet());
+        return ontology.getRuleIndex().getAffectedRules(entities, properties);
+    }
+
+    private Rule createRule(String name, Entity symptom) {
+        Rule rule = new Rule(name);
+        rule.addDeclarationAtom(new ClassDeclarationAtom<>(patientClass, patientVariable));
+        rule.addBodyAtom(new TwoArgumentsAtom<>(HAS_SYMPTOM_PROPERTY, patientVariable, symptom));
+        rule.addHeadAtom(new TwoArgumentsAtom<>(HAS_DISEASE_PROPERTY, patientVariable, ontology.getDiseases().get("Cold")));
+        return rule;
+    }
+}
@@ -0,0 +1,55 @@
+package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+
+public class AtomicFilesTest {
+
+    private static final String OLD_CONTENT = "old content";
+    private static final String NEW_CONTENT = "new content";
+
+    private File directory;
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("atomic").toFile();
+        file = new File(directory, "knowledge_base.owl");
+        Files.write(file.toPath(), OLD_CONTENT.getBytes(UTF_8));
+    }
+
+    @Test
+    public void testWriteReplacesContent() throws Exception {
+        AtomicFiles.write(file, output -> output.write(NEW_CONTENT.getBytes(UTF_8)));
+
+        assertEquals(NEW_CONTENT, read(file));
+        assertArrayEquals(new String[]{file.getName()}, directory.list());
+    }
+
+    @Test
+    public void testFailedWriteKeepsContent() throws Exception {
+        try {
+            AtomicFiles.write(file, output -> {
+                output.write(NEW_CONTENT.getBytes(UTF_8));
+                throw new IOException("Disk full.");
+            });
+            fail("Exception of the writer was not thrown.");
+        } catch (IOException e) {
+            assertEquals("Disk full.", e.getMessage());
+        }
+
+        assertEquals(OLD_CONTENT, read(file));
+        assertArrayEquals(new String[]{file.getName()}, directory.list());
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), UTF_8);
+    }
+}
@@ -1,5 +1,6 @@
 package pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.utils;
 
+import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -11,6 +12,7 @@ import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.model.rule.Rule;
 import pl.edu.agh.plonka.bartlomiej.diseasesdiagnoser.service.MachineLearning;
 
 import java.util.*;
+import java.util.concurrent.CancellationException;
 
 import static java.util.Collections.emptyList;
 import static java.util.Collections.singleton;
@@ -52,6 +54,11 @@ public class MachineLearningTest {
         machineLearning = new MachineLearning(ontologyWrapper);
     }
 
+    @After
+    public void tearDown() {
+        machineLearning.close();
+    }
+
     @Test
     public void testSequentialCoveringGenerateUniversalRule() throws Throwable {
         Patient patient = createPatient("Patient", SYMPTOMS.values(), DISEASES.get("Disease1"));
@@ -95,6 +102,21 @@ public class MachineLearningTest {
         Assert.assertEquals(2, ruleList.size());
     }
 
+    @Test
+    public void testCancelBeforeLearningCancelsOnlyNextRun() throws Throwable {
+        Patient patient = createPatient("Patient", SYMPTOMS.values(), DISEASES.get("Disease1"));
+
+        machineLearning.cancel();
+        try {
+            machineLearning.sequentialCovering(singleton(patient));
+            Assert.fail("Cancelled learning was finished.");
+        } catch (CancellationException e) {
+            // expected
+        }
+
+        Assert.assertEquals(1, machineLearning.sequentialCovering(singleton(patient)).size());
+    }
+
     private Patient createPatient(String id, Collection<Entity> symptoms, Entity disease) {
         return createPatient(id, null, symptoms, disease);
     }